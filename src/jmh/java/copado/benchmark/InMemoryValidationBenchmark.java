@@ -0,0 +1,72 @@
+package copado.benchmark;
+
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a single YamlProcessor shared by many request threads validating YAMLs held in memory, as
+ * an embedding service does with uploads. Compare the score with one thread and with several, for example
+ * {@code -Djmh.args="InMemoryValidationBenchmark -t 1"} and {@code -t 4}: the last chunk of expanded
+ * expressions is compiled by the requesting thread, so on a machine with that many cores the score should
+ * grow with the threads instead of being bound by the shared fork-join pool. Unit tests only check that
+ * concurrent validations give the same result, timing is left to this benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryValidationBenchmark {
+
+    @Param({"100", "1000"})
+    public int rules;
+
+    @Param({"20"})
+    public int replaceValues;
+
+    private final YamlProcessor yamlProcessor = new YamlProcessor();
+    private byte[] yamlBytes;
+    private String yaml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File yamlFile = File.createTempFile("copado-benchmark-", ".yml");
+        try {
+            SyntheticYaml.write(yamlFile, rules, 50, replaceValues, 3);
+            yamlBytes = Files.readAllBytes(yamlFile.toPath());
+            yaml = new String(yamlBytes, StandardCharsets.UTF_8);
+        } finally {
+            yamlFile.delete();
+        }
+    }
+
+    @Benchmark
+    public YamlValidations bytes() {
+        return yamlProcessor.isValid(yamlBytes);
+    }
+
+    @Benchmark
+    public YamlValidations reader() {
+        return yamlProcessor.isValid(new StringReader(yaml));
+    }
+}
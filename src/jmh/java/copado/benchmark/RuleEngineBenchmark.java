@@ -0,0 +1,129 @@
+package copado.benchmark;
+
+import copado.rules.FileChange;
+import copado.rules.MetadataFiles;
+import copado.rules.ReplacementRule;
+import copado.rules.RuleEngine;
+import copado.yaml.CopadoYaml;
+import copado.yaml.CopadoYamlRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Dry run of the rule engine over a metadata checkout of large object files, where dozens of rules
+ * target the same extension, with the literal prefilter and running every pattern over every file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class RuleEngineBenchmark {
+
+    private static final String[] TAGS = {"fields", "fieldSets", "listViews", "recordTypes", "validationRules", "webLinks"};
+
+    @Param({"true", "false"})
+    public boolean prefilter;
+
+    @Param({"40"})
+    public int rules;
+
+    @Param({"20"})
+    public int replaceValues;
+
+    @Param({"4"})
+    public int files;
+
+    @Param({"2000"})
+    public int fieldsPerFile;
+
+    private Path checkout;
+    private List<Path> metadataFiles;
+    private RuleEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        checkout = Files.createTempDirectory("copado-benchmark-");
+        for (int f = 0; f < files; f++) {
+            writeObject(checkout.resolve("Object" + f + "__c.object").toFile(), f);
+        }
+        metadataFiles = MetadataFiles.find(checkout);
+
+        Map<String, String> regexLib = new LinkedHashMap<>();
+        for (String tag : TAGS) {
+            regexLib.put(tag, "(?s)(<" + tag + ">(?:(?!<" + tag + ">).)*?<fullName>___REPLACEVALUE___</fullName>(?:(?!<"
+                    + tag + ">).)*?</" + tag + ">)");
+        }
+        Map<String, CopadoYamlRule> yamlRules = new LinkedHashMap<>();
+        for (int r = 0; r < rules; r++) {
+            CopadoYamlRule rule = new CopadoYamlRule();
+            rule.setExtensions(Collections.singletonList("object"));
+            rule.setRegex_name(TAGS[r % TAGS.length]);
+            List<String> values = new ArrayList<>();
+            for (int v = 0; v < replaceValues; v++) {
+                values.add("Field_" + r + "_" + v + "__c");
+            }
+            rule.setReplace_values(values);
+            rule.setReplace_with("");
+            yamlRules.put("rule_" + r, rule);
+        }
+        CopadoYaml yaml = new CopadoYaml();
+        yaml.setRegex_lib(regexLib);
+        yaml.setRules(yamlRules);
+        engine = new RuleEngine(ReplacementRule.of(yaml), 1, prefilter);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(checkout)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public List<FileChange> apply() {
+        return engine.apply(metadataFiles, null, false);
+    }
+
+    /**
+     * An object with fields, some of them named like the replace values of the synthetic rules.
+     */
+    private void writeObject(final File file, final int seed) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<CustomObject xmlns=\"http://soap.sforce.com/2006/04/metadata\">\n");
+            for (int i = 0; i < fieldsPerFile; i++) {
+                String name = i % 997 == seed ? "Field_" + (i % rules) + "_" + (i % replaceValues) + "__c" : "Other_" + i + "__c";
+                writer.write("    <fields>\n        <fullName>" + name + "</fullName>\n        <externalId>false</externalId>\n"
+                        + "        <label>" + name + "</label>\n        <length>255</length>\n        <type>Text</type>\n    </fields>\n");
+            }
+            writer.write("</CustomObject>\n");
+        }
+    }
+}
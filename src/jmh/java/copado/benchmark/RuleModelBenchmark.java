@@ -0,0 +1,107 @@
+package copado.benchmark;
+
+import copado.rules.ReplacementRule;
+import copado.yaml.CompactYaml;
+import copado.yaml.CopadoYaml;
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidations;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by the rules of a synthetic YAML once loaded for plan and apply: mapped into CopadoYaml
+ * and turned into replacement rules, against loaded into CompactYaml while it is validated. The
+ * retainedBytes counter is the heap used after a full collection with the model and its rules alive,
+ * less the heap used before loading them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class RuleModelBenchmark {
+
+    @Param({"100000"})
+    public int rules;
+
+    @Param({"500"})
+    public int regexes;
+
+    @Param({"20"})
+    public int replaceValues;
+
+    @Param({"5"})
+    public int branches;
+
+    private final YamlProcessor yamlProcessor = new YamlProcessor();
+    private File yamlFile;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        yamlFile = File.createTempFile("copado-benchmark-", ".yml");
+        SyntheticYaml.write(yamlFile, rules, regexes, replaceValues, branches);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        yamlFile.delete();
+    }
+
+    @Benchmark
+    public List<ReplacementRule> objectModel(final RetainedHeap heap) {
+        long before = usedHeap();
+        CopadoYaml yaml = yamlProcessor.parseYamlFile(yamlFile);
+        List<ReplacementRule> loaded = ReplacementRule.of(yaml);
+        heap.retainedBytes = usedHeap() - before;
+        // keeps both alive until the heap is measured, as validation and lookup use them
+        return yaml.getRules().size() == loaded.size() ? loaded : null;
+    }
+
+    @Benchmark
+    public List<ReplacementRule> compactModel(final RetainedHeap heap) {
+        long before = usedHeap();
+        CompactYaml yaml = yamlProcessor.load(yamlFile, new YamlValidations());
+        List<ReplacementRule> loaded = ReplacementRule.of(yaml);
+        heap.retainedBytes = usedHeap() - before;
+        return yaml.getRuleCount() == loaded.size() ? loaded : null;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,65 @@
+package copado.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes synthetic Copado YAML files shaped like generated production ones: a regex_lib of canonical
+ * metadata patterns and rules spread over it, with file names or extensions, replace values and branches.
+ */
+public final class SyntheticYaml {
+
+    private static final String[] TAGS = {"fields", "userPermissions", "fieldPermissions", "classAccesses",
+            "pageAccesses", "objectPermissions", "recordTypeVisibilities", "tabSettings"};
+    private static final String[] EXTENSIONS = {"object", "profile", "permissionset", "layout", "flexipage"};
+    private static final String[] BRANCHES = {"main", "uat", "dev", "qa", "hotfix", "release", "integration"};
+
+    private SyntheticYaml() {
+    }
+
+    /**
+     * @param file          File to write
+     * @param rules         Number of rules
+     * @param regexes       Number of regex_lib entries
+     * @param replaceValues Replace values of each rule
+     * @param branches      Branches of each rule, half of the rules list them as exclusion_branches
+     * @throws IOException when the file can not be written
+     */
+    public static void write(final File file, final int rules, final int regexes, final int replaceValues,
+                             final int branches) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("regex_lib:\n");
+            for (int i = 0; i < regexes; i++) {
+                String tag = TAGS[i % TAGS.length];
+                writer.write("    regex_" + i + ": '(?s)(<" + tag + ">(?:(?!<" + tag + ">).)*?<fullName>___REPLACEVALUE___</fullName>(?:(?!<"
+                        + tag + ">).)*?</" + tag + ">)'\n");
+            }
+            writer.write("\nrules:\n");
+            for (int i = 0; i < rules; i++) {
+                writer.write("    rule_" + i + ":\n");
+                if (i % 3 == 0) {
+                    writer.write("        file_names:\n            - 'Account" + i % 50 + ".object'\n");
+                } else {
+                    writer.write("        extensions:\n            - " + EXTENSIONS[i % EXTENSIONS.length] + "\n");
+                }
+                writer.write("        regex_name: 'regex_" + i % regexes + "'\n");
+                if (replaceValues > 0) {
+                    writer.write("        replace_values:\n");
+                    for (int v = 0; v < replaceValues; v++) {
+                        writer.write("            - Field_" + i + "_" + v + "__c\n");
+                    }
+                }
+                writer.write("        replace_with:\n");
+                if (branches > 0) {
+                    writer.write(i % 2 == 0 ? "        branches:\n" : "        exclusion_branches:\n");
+                    for (int b = 0; b < branches; b++) {
+                        writer.write("            - " + BRANCHES[(i + b) % BRANCHES.length] + "\n");
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package copado.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import copado.yaml.CopadoYaml;
+import copado.yaml.ExpandedRegexValidator;
+import copado.yaml.RuleValidator;
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidationMessage;
+import copado.yaml.YamlValidations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of YamlProcessor on synthetic Copado YAMLs, end to end and by phase:
+ * <ul>
+ * <li>parse: read every YAML token</li>
+ * <li>structure: map the document into CopadoYaml</li>
+ * <li>regexCompile: compile every regex_lib entry</li>
+ * <li>expandedRegexCompile: compile every regex_lib entry expanded with the replace values of its rules</li>
+ * <li>rules: check every rule</li>
+ * </ul>
+ * Run with {@code mvn verify -Pjmh}, the gc profiler reports the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YamlProcessorBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int rules;
+
+    @Param({"10", "500"})
+    public int regexes;
+
+    @Param({"0", "20"})
+    public int replaceValues;
+
+    @Param({"0", "5"})
+    public int branches;
+
+    private final YamlProcessor yamlProcessor = new YamlProcessor();
+    private final RuleValidator ruleValidator = new RuleValidator();
+    private final YAMLFactory yamlFactory = new YAMLFactory();
+    private File yamlFile;
+    private CopadoYaml yaml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        yamlFile = File.createTempFile("copado-benchmark-", ".yml");
+        SyntheticYaml.write(yamlFile, rules, regexes, replaceValues, branches);
+        yaml = yamlProcessor.parseYamlFile(yamlFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        yamlFile.delete();
+    }
+
+    @Benchmark
+    public YamlValidations isValid() {
+        return yamlProcessor.isValid(yamlFile);
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) throws IOException {
+        try (JsonParser parser = yamlFactory.createParser(yamlFile)) {
+            while (parser.nextToken() != null) {
+                blackhole.consume(parser.getText());
+            }
+        }
+    }
+
+    @Benchmark
+    public CopadoYaml structure() {
+        return yamlProcessor.parseYamlFile(yamlFile);
+    }
+
+    @Benchmark
+    public void regexCompile(final Blackhole blackhole) {
+        for (String regEx : yaml.getRegex_lib().values()) {
+            blackhole.consume(Pattern.compile(regEx));
+        }
+    }
+
+    @Benchmark
+    public List<YamlValidationMessage> expandedRegexCompile() {
+        ExpandedRegexValidator expandedRegexValidator = new ExpandedRegexValidator();
+        yaml.getRules().forEach((name, rule) -> expandedRegexValidator.add(name, yaml.getRegex_lib().get(rule.getRegex_name()),
+                rule.getReplace_values(), null, null));
+        return expandedRegexValidator.validate();
+    }
+
+    @Benchmark
+    public YamlValidations rules() {
+        YamlValidations validations = new YamlValidations();
+        ruleValidator.validate(yaml, validations);
+        return validations;
+    }
+}
@@ -1,93 +1,51 @@
 package copado;
 
+import copado.server.DaemonClient;
+import copado.server.ValidationServer;
 import copado.yaml.YamlProcessor;
-import copado.yaml.YamlValidationMessage;
-import copado.yaml.YamlValidations;
 
-import java.io.File;
-import java.io.PrintStream;
-
-import static java.util.Arrays.asList;
+import java.io.IOException;
+import java.util.OptionalInt;
 
 public class App {
 
     private static Log log = new Log(System.out, System.err);
-    private static YamlProcessor yamlProcessor = new YamlProcessor();
 
     public static void main(String[] args) {
-        if (args.length > 0) {
-            File yamlFile = obtainYamlFile(args);
-            YamlValidations valid = yamlProcessor.isValid(yamlFile);
-            printResultsAndExit(valid);
-        } else {
-            printUsage();
-        }
-    }
-
-    private static File obtainYamlFile(String[] args) {
-        String yamlPath = parse(args);
-        if(yamlPath == null) {
-            System.exit(1);
+        CliOptions options = parseQuietly(args);
+        if (options != null && options.isServer() && options.getFiles().isEmpty()
+                && options.getDirectories().isEmpty() && !options.isStdin()) {
+            serve(options);
+            return;
         }
-        return new File(yamlPath);
-    }
-
-    private static String parse(String[] args) {
-        int pos = 0;
-        String arg = args[pos];
-        if (asList("-h", "--help").contains(arg)) {
-            printUsage();
-            System.exit(1);
-        } else if (asList("-f", "--file").contains(arg)) {
-            int valuePos = pos + 1;
-            if (valuePos >= args.length) {
-                log.error("Missing argument for option -f/--file");
-            } else {
-                return args[valuePos];
+        if (options != null && options.isClient()) {
+            OptionalInt exitCode = new DaemonClient(options.getPort())
+                    .run(args, System.getProperty("user.dir"), System.in, System.out, System.err);
+            if (exitCode.isPresent()) {
+                System.exit(exitCode.getAsInt());
             }
-        } else {
-            log.error("Unrecognized option: " + arg);
         }
-        return null;
-    }
-
-    private static void printUsage() {
-        log.error("");
-        log.error("Usage: copado-yaml [options]");
-        log.error("");
-        log.error("Options:");
-        log.error(" -f,--file <arg>       Path to Copado YAML file");
-        log.error(" -h,--help             Display help information");
+        System.exit(new Cli(log, System.in, null, new YamlProcessor()).run(args));
     }
 
-    private static void printResultsAndExit(YamlValidations yamlValidation) {
-        if(yamlValidation.hasErrors()) {
-            log.error("YAML is not valid");
-            for (YamlValidationMessage validation : yamlValidation.getYamlValidationMessages()) {
-                log.error("Validation error on node: " + validation.getNode() + " with message: " + validation.getMessage());
-            }
-            System.exit(1);
-        } else {
-            log.info("YAML is Copado Compliant!");
+    /**
+     * Parse options only to know how to run, errors are reported by {@link Cli}.
+     */
+    private static CliOptions parseQuietly(String[] args) {
+        try {
+            return CliOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            return null;
         }
-        System.exit(0);
     }
 
-    private static class Log {
-        private PrintStream stdOut;
-        private PrintStream stdErr;
-
-        Log(PrintStream stdOut, PrintStream stdErr) {
-            this.stdErr = stdErr;
-            this.stdOut = stdOut;
-        }
-
-        void info(String message) {
-            stdOut.println(message);
-        }
-
-        void error(String message) {
-            stdErr.println(message);
+    private static void serve(CliOptions options) {
+        try (ValidationServer server = new ValidationServer(options.getPort(), options.getThreads())) {
+            log.info("Validation daemon listening on 127.0.0.1:" + server.getPort());
+            server.serve();
+        } catch (IOException ex) {
+            log.error("Unable to start validation daemon on port " + options.getPort() + ": " + ex.getMessage());
+            System.exit(1);
         }
     }
 }
@@ -0,0 +1,578 @@
+package copado;
+
+import copado.batch.BatchResult;
+import copado.batch.BatchValidator;
+import copado.batch.JsonSink;
+import copado.cache.CachedYamlProcessor;
+import copado.cache.ValidationCache;
+import copado.git.GitRepository;
+import copado.git.GitValidator;
+import copado.git.RefResult;
+import copado.metrics.RegexTiming;
+import copado.metrics.ValidationMetrics;
+import copado.redos.BacktrackingAnalyzer;
+import copado.rules.FileChange;
+import copado.rules.MetadataFiles;
+import copado.rules.ReplacementRule;
+import copado.rules.RuleEngine;
+import copado.rules.RuleIndex;
+import copado.rules.RuleProfile;
+import copado.rules.RuleProfiler;
+import copado.watch.IncrementalValidator;
+import copado.watch.WatchResult;
+import copado.watch.YamlWatcher;
+import copado.yaml.CompactYaml;
+import copado.yaml.RegexAnalyzer;
+import copado.yaml.RegexChecker;
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidationMessage;
+import copado.yaml.YamlValidations;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the command line. Every execution reports through its own {@link Log} and returns the exit code
+ * instead of ending the JVM, so it can also run inside the validation daemon.
+ */
+public class Cli {
+
+    private static final String DEFAULT_REFS = "refs/heads";
+    private static final String DEFAULT_GIT_PATH = "Copado.yml";
+
+    private final Log log;
+    private final InputStream stdin;
+    private final File workingDirectory;
+    private final YamlProcessor defaultYamlProcessor;
+    private final Map<File, String> displayNames = new HashMap<>();
+
+    /**
+     * @param log                  Where the output is written
+     * @param stdin                Where the list of files is read from with -/--stdin
+     * @param workingDirectory     Directory relative paths are resolved against, null for the JVM working directory
+     * @param defaultYamlProcessor Processor used when no option requires a specific one
+     */
+    public Cli(Log log, InputStream stdin, File workingDirectory, YamlProcessor defaultYamlProcessor) {
+        this.log = log;
+        this.stdin = stdin;
+        this.workingDirectory = workingDirectory;
+        this.defaultYamlProcessor = defaultYamlProcessor;
+    }
+
+    /**
+     * Run the command line.
+     *
+     * @param args Command line arguments
+     * @return Exit code, 0 when every YAML is valid
+     */
+    public int run(String[] args) {
+        try {
+            execute(args);
+            return 0;
+        } catch (Exit exit) {
+            return exit.code;
+        }
+    }
+
+    private void execute(String[] args) {
+        if (args.length > 0) {
+            CliOptions options = obtainOptions(args);
+            if (options.isServer()) {
+                log.error("Option --server can not be combined with other commands");
+                exit(1);
+            }
+            // with --git, -f/--file gives paths inside the repository
+            List<File> yamlFiles = options.getGitRepository() == null ? obtainYamlFiles(options) : null;
+            ValidationCache cache = obtainCache(options);
+            YamlProcessor yamlProcessor = obtainYamlProcessor(options, cache);
+            try {
+                if (options.getGitRepository() != null) {
+                    validateGitAndExit(yamlProcessor, options);
+                } else if (options.isProfile()) {
+                    profileAndExit(yamlProcessor, yamlFiles, options);
+                } else if (options.isPlan()) {
+                    planAndExit(yamlProcessor, yamlFiles, options);
+                } else if (options.getApplyDirectory() != null) {
+                    applyRulesAndExit(yamlProcessor, yamlFiles, options);
+                } else if (options.isWatch()) {
+                    watchAndExit(yamlProcessor, yamlFiles, cache);
+                } else if (options.getFormat() != null) {
+                    streamResultsAndExit(yamlProcessor, yamlFiles, options, cache);
+                } else if (yamlFiles.size() == 1) {
+                    YamlValidations valid = yamlProcessor.isValid(yamlFiles.get(0));
+                    evict(cache);
+                    printResultsAndExit(valid);
+                } else {
+                    List<BatchResult> results = new BatchValidator(yamlProcessor, options.getThreads()).validate(yamlFiles);
+                    evict(cache);
+                    printBatchResultsAndExit(results);
+                }
+            } finally {
+                if (options.isStats()) {
+                    printStats(yamlProcessor.getMetrics());
+                }
+            }
+        } else {
+            printUsage();
+        }
+    }
+
+    private CliOptions obtainOptions(String[] args) {
+        CliOptions options = null;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            log.error(ex.getMessage());
+            exit(1);
+        }
+        if (options.isHelp()) {
+            printUsage();
+            exit(1);
+        }
+        return options;
+    }
+
+    private List<File> obtainYamlFiles(CliOptions options) {
+        List<File> yamlFiles = new ArrayList<>();
+        options.getFiles().forEach(path -> yamlFiles.add(resolveFile(path)));
+        try {
+            options.getDirectories().forEach(path -> {
+                File directory = resolve(path);
+                for (File yamlFile : BatchValidator.findYamlFiles(directory)) {
+                    displayNames.put(yamlFile, Paths.get(path).resolve(directory.toPath().relativize(yamlFile.toPath())).toString());
+                    yamlFiles.add(yamlFile);
+                }
+            });
+        } catch (IllegalArgumentException ex) {
+            log.error(ex.getMessage());
+            exit(1);
+        }
+        if (options.isStdin()) {
+            yamlFiles.addAll(readFilesFromStdin());
+        }
+        if (yamlFiles.isEmpty()) {
+            log.error("No YAML files to validate");
+            exit(1);
+        }
+        return yamlFiles;
+    }
+
+    private ValidationCache obtainCache(CliOptions options) {
+        if (options.getCacheDirectory() == null) {
+            return null;
+        }
+        return new ValidationCache(resolve(options.getCacheDirectory()),
+                options.getCacheMaxSizeMb() * 1024L * 1024L, options.getCacheMaxAgeDays());
+    }
+
+    private YamlProcessor obtainYamlProcessor(CliOptions options, ValidationCache cache) {
+        RegexAnalyzer regexAnalyzer = options.isCheckRedos()
+                ? new BacktrackingAnalyzer(options.getRedosBudgetMillis())
+                : RegexAnalyzer.NONE;
+        // --stats reports this execution only, otherwise the work adds up to the metrics of the default processor
+        ValidationMetrics metrics = options.isStats() ? new ValidationMetrics() : defaultYamlProcessor.getMetrics();
+        if (cache != null) {
+            return new CachedYamlProcessor(cache, regexAnalyzer, metrics, options.isCheckDuplicates());
+        }
+        if (regexAnalyzer == RegexAnalyzer.NONE && !options.isStats() && !options.isCheckDuplicates()) {
+            return defaultYamlProcessor;
+        }
+        return new YamlProcessor(RegexChecker.COMPILE, regexAnalyzer, metrics, options.isCheckDuplicates());
+    }
+
+    private void evict(ValidationCache cache) {
+        if (cache != null) {
+            cache.evict();
+        }
+    }
+
+    private List<File> readFilesFromStdin() {
+        List<File> yamlFiles = new ArrayList<>();
+        readPathsFromStdin().forEach(path -> yamlFiles.add(resolveFile(path)));
+        return yamlFiles;
+    }
+
+    private List<String> readPathsFromStdin() {
+        List<String> paths = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stdin, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    paths.add(line.trim());
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Unable to read file list from stdin: " + ex.getMessage());
+            exit(1);
+        }
+        return paths;
+    }
+
+    private void printUsage() {
+        log.error("");
+        log.error("Usage: copado-yaml [options]");
+        log.error("       copado-yaml plan -f <arg> [--branch <arg>] < changed-paths");
+        log.error("       copado-yaml profile -f <arg> --metadata <arg> [--min-throughput <arg>]");
+        log.error("       copado-yaml --git <repo> [--refs <pattern>] [-f <path>]");
+        log.error("");
+        log.error("Options:");
+        log.error(" -f,--file <arg>         Path to Copado YAML file, can be repeated");
+        log.error(" -d,--dir <arg>          Directory with Copado YAML files (*.yml, *.yaml), scanned recursively");
+        log.error(" -,--stdin               Read paths of Copado YAML files from stdin, one per line");
+        log.error(" -t,--threads <arg>      Worker threads used to validate several files (default: available processors)");
+        log.error(" --cache-dir <arg>       Directory of the validation cache, reused between executions (disabled by default)");
+        log.error(" --cache-max-size <arg>  Maximum size of the validation cache in MB (default: 256)");
+        log.error(" --cache-max-age <arg>   Days an unused cache entry is kept (default: 30)");
+        log.error(" --apply <arg>           Apply the rules of the YAML file to the metadata files of this directory");
+        log.error(" --dry-run               With --apply, print the changes as a diff instead of rewriting the files");
+        log.error(" --branch <arg>          With --apply, plan or profile, branch the metadata is committed to (default: all rules apply)");
+        log.error(" --check-redos           Report regex_lib expressions that may backtrack catastrophically");
+        log.error(" --redos-budget <arg>    Milliseconds spent fuzzing each regex_lib expression (default: 2000)");
+        log.error(" --check-duplicates      Report duplicate and unused regex_lib entries and rules made redundant by others");
+        log.error(" --watch                 Validate the YAML file again every time it is saved, until stopped");
+        log.error(" --format <arg>          Output of the validation: text, json or ndjson (default: text)");
+        log.error(" --git <arg>             Validate the YAML at each ref of this git repository, -f gives its path (default: Copado.yml)");
+        log.error(" --refs <arg>            With --git, refs pattern, range (a..b) or revision, can be repeated (default: refs/heads)");
+        log.error(" --metadata <arg>        With profile, directory of sample metadata files the rules run over");
+        log.error(" --min-throughput <arg>  With profile, fail when a rule runs over its files slower than this, in MB/s");
+        log.error(" --warmup <arg>          With profile, runs over each file before timing it (default: 3)");
+        log.error(" --runs <arg>            With profile, timed runs over each file (default: 5)");
+        log.error(" --rule-timeout <arg>    With profile, fail a rule running longer than this over a file, in ms (default: 10000)");
+        log.error(" --stats                 Print the time of each validation phase, counters and the slowest regexes");
+        log.error(" --server                Run as a validation daemon on a loopback port, keeping the JVM warm");
+        log.error(" --client                Send the command to a running daemon, run it in process when there is none");
+        log.error(" --port <arg>            Loopback port of the validation daemon (default: 47213)");
+        log.error(" -h,--help               Display help information");
+    }
+
+    private void printResultsAndExit(YamlValidations yamlValidation) {
+        exit(printResults(yamlValidation) ? 0 : 1);
+    }
+
+    private boolean printResults(YamlValidations yamlValidation) {
+        if(yamlValidation.hasErrors()) {
+            log.error("YAML is not valid");
+            printValidationErrors(yamlValidation);
+            return false;
+        }
+        log.info("YAML is Copado Compliant!");
+        return true;
+    }
+
+    private void printBatchResultsAndExit(List<BatchResult> results) {
+        long invalid = 0;
+        for (BatchResult result : results) {
+            if (result.getValidations().hasErrors()) {
+                invalid++;
+                log.error(display(result.getFile()) + ": YAML is not valid");
+                printValidationErrors(result.getValidations());
+            } else {
+                log.info(display(result.getFile()) + ": YAML is Copado Compliant!");
+            }
+        }
+        log.info("Validated " + results.size() + " files, " + invalid + " not valid");
+        exit(invalid > 0 ? 1 : 0);
+    }
+
+    private void streamResultsAndExit(YamlProcessor yamlProcessor, List<File> yamlFiles, CliOptions options, ValidationCache cache) {
+        JsonSink sink = new JsonSink(options.getFormat(), this::display, log::info);
+        long start = System.nanoTime();
+        sink.begin();
+        int invalid = new BatchValidator(yamlProcessor, options.getThreads()).validate(yamlFiles, sink);
+        sink.end(yamlFiles.size(), invalid, System.nanoTime() - start);
+        evict(cache);
+        exit(invalid > 0 ? 1 : 0);
+    }
+
+    private void validateGitAndExit(YamlProcessor yamlProcessor, CliOptions options) {
+        List<String> refs = options.getRefs().isEmpty() ? Collections.singletonList(DEFAULT_REFS) : options.getRefs();
+        List<String> paths = options.getFiles().isEmpty() ? Collections.singletonList(DEFAULT_GIT_PATH) : options.getFiles();
+        GitRepository repository = new GitRepository(resolve(options.getGitRepository()));
+        List<RefResult> results = null;
+        try {
+            results = new GitValidator(repository, yamlProcessor, options.getThreads()).validate(refs, paths);
+        } catch (IOException ex) {
+            log.error("Unable to read git repository " + options.getGitRepository() + ": " + ex.getMessage());
+            exit(1);
+        }
+        if (results.isEmpty()) {
+            log.error("No refs match " + String.join(", ", refs));
+            exit(1);
+        }
+        // messages are printed for the first ref of each blob, later refs with the same content point to it
+        Map<String, String> firstRefs = new HashMap<>();
+        long failed = 0;
+        for (RefResult result : results) {
+            String display = result.getRef() + ":" + result.getPath();
+            if (!result.isFound()) {
+                failed++;
+                log.error(display + ": not found");
+                continue;
+            }
+            String first = firstRefs.putIfAbsent(result.getBlobId(), display);
+            if (!result.getValidations().hasErrors()) {
+                log.info(display + ": YAML is Copado Compliant!");
+            } else if (first != null) {
+                failed++;
+                log.error(display + ": YAML is not valid, same content as " + first);
+            } else {
+                failed++;
+                log.error(display + ": YAML is not valid");
+                printValidationErrors(result.getValidations());
+            }
+        }
+        log.info("Validated " + results.size() + " files at " + results.stream().map(RefResult::getRef).distinct().count()
+                + " refs, " + firstRefs.size() + " distinct, " + failed + " not valid or missing");
+        exit(failed > 0 ? 1 : 0);
+    }
+
+    private void planAndExit(YamlProcessor yamlProcessor, List<File> yamlFiles, CliOptions options) {
+        if (yamlFiles.size() != 1) {
+            log.error("Command plan requires a single Copado YAML file");
+            exit(1);
+        }
+        YamlValidations validations = new YamlValidations();
+        CompactYaml yaml = yamlProcessor.load(yamlFiles.get(0), validations);
+        if (validations.hasErrors()) {
+            printResultsAndExit(validations);
+        }
+        RuleIndex index = new RuleIndex(ReplacementRule.of(yaml));
+        List<String> paths = readPathsFromStdin();
+        int matched = 0;
+        for (String path : paths) {
+            List<ReplacementRule> rules = index.rulesFor(fileName(path), options.getBranch());
+            if (!rules.isEmpty()) {
+                matched++;
+                log.info(path + ": " + rules.stream().map(ReplacementRule::getName).collect(Collectors.joining(", ")));
+            }
+        }
+        log.info("Rules apply to " + matched + " of " + paths.size() + " files");
+        exit(0);
+    }
+
+    private static String fileName(String path) {
+        return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+    }
+
+    private void profileAndExit(YamlProcessor yamlProcessor, List<File> yamlFiles, CliOptions options) {
+        if (yamlFiles.size() != 1) {
+            log.error("Command profile requires a single Copado YAML file");
+            exit(1);
+        }
+        YamlValidations validations = new YamlValidations();
+        CompactYaml yaml = yamlProcessor.load(yamlFiles.get(0), validations);
+        if (validations.hasErrors()) {
+            printResultsAndExit(validations);
+        }
+        Path metadataDirectory = resolve(options.getMetadataDirectory()).toPath();
+        Path displayDirectory = Paths.get(options.getMetadataDirectory());
+        List<RuleProfile> profiles = null;
+        try {
+            List<Path> metadataFiles = MetadataFiles.find(metadataDirectory);
+            profiles = new RuleProfiler(ReplacementRule.of(yaml), options.getWarmupRuns(), options.getMeasuredRuns(),
+                    options.getRuleTimeoutMillis()).profile(metadataFiles, options.getBranch());
+        } catch (IOException ex) {
+            log.error("Unable to profile rules on " + options.getMetadataDirectory() + ": " + ex.getMessage());
+            exit(1);
+        }
+        // slowest first, rules selecting no sample file last
+        profiles.sort(Comparator.comparingDouble(profile -> Double.isNaN(profile.getThroughput())
+                ? Double.POSITIVE_INFINITY : profile.getThroughput()));
+        int profiled = 0;
+        int slow = 0;
+        for (RuleProfile profile : profiles) {
+            if (profile.getFiles() == 0) {
+                log.info(profile.getRule() + ": no sample file selected");
+                continue;
+            }
+            profiled++;
+            Path worstFile = displayDirectory.resolve(metadataDirectory.relativize(profile.getWorstFile()));
+            if (profile.getFailure() != null) {
+                slow++;
+                String failure = profile.getFailure() == RuleProfile.Failure.TIMEOUT
+                        ? "timed out after " + options.getRuleTimeoutMillis() + " ms"
+                        : "overflowed the matcher stack";
+                log.error(profile.getRule() + ": " + failure + " on " + worstFile + ", below the minimum throughput");
+                continue;
+            }
+            String line = String.format(Locale.ROOT, "%s: %.1f MB/s, %d files, %.1f MB, %d matches, worst %.1f ms on %s",
+                    profile.getRule(), profile.getThroughput(), profile.getFiles(), profile.getCharacters() / 1e6,
+                    profile.getMatches(), profile.getWorstNanos() / 1e6, worstFile);
+            if (profile.getThroughput() < options.getMinThroughput()) {
+                slow++;
+                log.error(line + ", below " + options.getMinThroughput() + " MB/s");
+            } else {
+                log.info(line);
+            }
+        }
+        log.info("Profiled " + profiled + " of " + profiles.size() + " rules, " + slow + " below the minimum throughput");
+        exit(slow > 0 ? 1 : 0);
+    }
+
+    private void applyRulesAndExit(YamlProcessor yamlProcessor, List<File> yamlFiles, CliOptions options) {
+        if (yamlFiles.size() != 1) {
+            log.error("Option --apply requires a single Copado YAML file");
+            exit(1);
+        }
+        YamlValidations validations = new YamlValidations();
+        CompactYaml yaml = yamlProcessor.load(yamlFiles.get(0), validations);
+        if (validations.hasErrors()) {
+            printResultsAndExit(validations);
+        }
+        Path metadataDirectory = resolve(options.getApplyDirectory()).toPath();
+        List<Path> metadataFiles = null;
+        try {
+            metadataFiles = MetadataFiles.find(metadataDirectory);
+        } catch (IOException ex) {
+            log.error("Unable to read directory " + options.getApplyDirectory());
+            exit(1);
+        }
+        List<ReplacementRule> rules = ReplacementRule.of(yaml);
+        List<FileChange> changes = new RuleEngine(rules, options.getThreads())
+                .apply(metadataFiles, options.getBranch(), !options.isDryRun());
+        int replacements = 0;
+        boolean failed = false;
+        Path displayDirectory = Paths.get(options.getApplyDirectory());
+        for (FileChange change : changes) {
+            Path displayFile = displayDirectory.resolve(metadataDirectory.relativize(change.getFile()));
+            if (change.hasError()) {
+                failed = true;
+                log.error(displayFile + ": " + change.getError());
+            } else if (options.isDryRun()) {
+                log.info(new FileChange(displayFile, change.getReplacements(), null).toDiff());
+            } else {
+                log.info("Updated " + displayFile + " (" + change.getReplacements().size() + " replacements)");
+            }
+            replacements += change.getReplacements().size();
+        }
+        log.info((options.isDryRun() ? "Would make " : "Made ") + replacements + " replacements on "
+                + changes.stream().filter(change -> !change.hasError()).count() + " of " + metadataFiles.size() + " files");
+        exit(failed ? 1 : 0);
+    }
+
+    private void watchAndExit(YamlProcessor yamlProcessor, List<File> yamlFiles, ValidationCache cache) {
+        if (yamlFiles.size() != 1) {
+            log.error("Option --watch requires a single Copado YAML file");
+            exit(1);
+        }
+        File yamlFile = yamlFiles.get(0);
+        IncrementalValidator validator = new IncrementalValidator(yamlProcessor);
+        try (YamlWatcher watcher = new YamlWatcher(yamlFile)) {
+            revalidate(validator, yamlFile);
+            log.info("Watching " + display(yamlFile) + " for changes, press Ctrl+C to stop");
+            watcher.watch(() -> {
+                revalidate(validator, yamlFile);
+                evict(cache);
+            });
+        } catch (IOException ex) {
+            log.error("Unable to watch " + display(yamlFile) + ": " + ex.getMessage());
+            exit(1);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        exit(0);
+    }
+
+    private void revalidate(IncrementalValidator validator, File yamlFile) {
+        long start = System.nanoTime();
+        WatchResult result = validator.validate(yamlFile);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        printResults(result.getValidations());
+        log.info("Checked " + result.getCheckedRegexes() + " of " + result.getTotalRegexes() + " regex_lib entries and "
+                + result.getCheckedRules() + " of " + result.getTotalRules() + " rules in " + millis + " ms");
+    }
+
+    /**
+     * Statistics go to stderr, so they do not mix with JSON output.
+     */
+    private void printStats(ValidationMetrics metrics) {
+        log.error("Validation stats:");
+        log.error(String.format("  %-24s%d", "files", metrics.getFiles()));
+        log.error(String.format("  %-24s%d", "bytes read", metrics.getBytesRead()));
+        log.error(String.format("  %-24s%d", "regex_lib entries", metrics.getRegexes()));
+        log.error(String.format("  %-24s%d", "rules", metrics.getRules()));
+        log.error(String.format("  %-24s%d", "expanded regexes", metrics.getExpandedRegexes()));
+        long allocated = metrics.getAllocatedBytes();
+        log.error(String.format("  %-24s%s", "allocated bytes", allocated < 0 ? "not reported by the JVM" : String.valueOf(allocated)));
+        for (ValidationMetrics.Phase phase : ValidationMetrics.Phase.values()) {
+            log.error(String.format("  %-24s%.3f ms", phase.getLabel(), metrics.getNanos(phase) / 1_000_000.0));
+        }
+        log.error(String.format("  %-24s%.3f ms", "total", metrics.getTotalMillis()));
+        List<RegexTiming> slowest = metrics.getSlowest();
+        if (!slowest.isEmpty()) {
+            log.error("Slowest regexes to compile:");
+            for (RegexTiming timing : slowest) {
+                log.error(String.format("  %.3f ms %s: %s", timing.getNanos() / 1_000_000.0, timing.getNode(), timing.getRegEx()));
+            }
+        }
+    }
+
+    private void printValidationErrors(YamlValidations yamlValidation) {
+        for (YamlValidationMessage validation : yamlValidation.getYamlValidationMessages()) {
+            log.error("Validation error on node: " + validation.getNode() + " with message: " + validation.getMessage() + location(validation));
+        }
+    }
+
+    private String location(YamlValidationMessage validation) {
+        if (validation.getLine() == null) {
+            return "";
+        }
+        return " (line " + validation.getLine() + ", column " + validation.getColumn() + ")";
+    }
+
+    /**
+     * Resolve a path given on the command line against the working directory.
+     */
+    private File resolve(String path) {
+        File file = new File(path);
+        if (workingDirectory == null || file.isAbsolute()) {
+            return file;
+        }
+        return new File(workingDirectory, path);
+    }
+
+    private File resolveFile(String path) {
+        File file = resolve(path);
+        displayNames.put(file, path);
+        return file;
+    }
+
+    /**
+     * Path of a file as the user wrote it, so output does not depend on where the command runs.
+     */
+    private String display(File file) {
+        return displayNames.getOrDefault(file, file.toString());
+    }
+
+    private void exit(int code) {
+        throw new Exit(code);
+    }
+
+    /**
+     * Ends the execution with an exit code. It carries no stack trace, it only unwinds to {@link #run(String[])}.
+     */
+    private static class Exit extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int code;
+
+        Exit(int code) {
+            super(null, null, false, false);
+            this.code = code;
+        }
+    }
+}
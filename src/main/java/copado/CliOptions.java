@@ -0,0 +1,293 @@
+package copado;
+
+import copado.batch.JsonSink;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Command line options accepted by the CLI.
+ */
+@Data
+class CliOptions {
+    /**
+     * Files given with -f/--file, it can be repeated
+     */
+    private List<String> files = new ArrayList<>();
+    /**
+     * Directories given with -d/--dir
+     */
+    private List<String> directories = new ArrayList<>();
+    /**
+     * Read the list of files to validate from stdin, one path per line
+     */
+    private boolean stdin;
+    /**
+     * Worker threads used when validating several files
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Directory of the validation cache, null when the cache is disabled
+     */
+    private String cacheDirectory;
+    /**
+     * Maximum size of the validation cache in megabytes
+     */
+    private int cacheMaxSizeMb = 256;
+    /**
+     * Validation cache entries not used in this number of days are evicted
+     */
+    private int cacheMaxAgeDays = 30;
+    /**
+     * Metadata directory where the rules are applied, null when rules are only validated
+     */
+    private String applyDirectory;
+    /**
+     * Print the changes the rules would make instead of rewriting the files
+     */
+    private boolean dryRun;
+    /**
+     * Branch the metadata is committed to, used to select the rules
+     */
+    private String branch;
+    /**
+     * Check regex_lib expressions for catastrophic backtracking
+     */
+    private boolean checkRedos;
+    /**
+     * Milliseconds spent fuzzing each regex_lib expression when checking for catastrophic backtracking
+     */
+    private int redosBudgetMillis = 2000;
+    /**
+     * Report duplicate and unused regex_lib entries and rules made redundant by others
+     */
+    private boolean checkDuplicates;
+    /**
+     * Keep validating the file every time it is saved
+     */
+    private boolean watch;
+    /**
+     * Run as a validation daemon instead of validating
+     */
+    private boolean server;
+    /**
+     * Send the command to a running validation daemon, running it in process when there is none
+     */
+    private boolean client;
+    /**
+     * Loopback port of the validation daemon
+     */
+    private int port = 47213;
+    /**
+     * Print the rules that apply to each changed path read from stdin instead of validating
+     */
+    private boolean plan;
+    /**
+     * Measure how fast each rule runs over the sample metadata instead of validating
+     */
+    private boolean profile;
+    /**
+     * Directory of sample metadata profiled by the rules
+     */
+    private String metadataDirectory;
+    /**
+     * Rules running slower than this, in MB/s, fail the profile; 0 to only report
+     */
+    private double minThroughput;
+    /**
+     * Runs over each sample file before the profile of a rule is timed
+     */
+    private int warmupRuns = 3;
+    /**
+     * Timed runs over each sample file
+     */
+    private int measuredRuns = 5;
+    /**
+     * Milliseconds a rule may run over a single sample file before it is reported as too slow
+     */
+    private int ruleTimeoutMillis = 10000;
+    /**
+     * Machine readable output of the validation, null for text
+     */
+    private JsonSink.Format format;
+    /**
+     * Print timers and counters of the validation
+     */
+    private boolean stats;
+    /**
+     * Git repository whose refs are validated, null to validate files; -f/--file then gives paths inside it
+     */
+    private String gitRepository;
+    /**
+     * Ref patterns, ranges or revisions validated with --git, it can be repeated
+     */
+    private List<String> refs = new ArrayList<>();
+    /**
+     * Display help information
+     */
+    private boolean help;
+
+    /**
+     * Parse command line arguments.
+     *
+     * @param args Command line arguments
+     * @return Parsed options
+     * @throws IllegalArgumentException when an option is unknown or its argument is missing or wrong
+     */
+    static CliOptions parse(final String[] args) {
+        CliOptions options = new CliOptions();
+        for (int pos = 0; pos < args.length; pos++) {
+            String arg = args[pos];
+            if (pos == 0 && "plan".equals(arg)) {
+                options.plan = true;
+            } else if (pos == 0 && "profile".equals(arg)) {
+                options.profile = true;
+            } else if (asList("-h", "--help").contains(arg)) {
+                options.help = true;
+            } else if (asList("-f", "--file").contains(arg)) {
+                options.files.add(value(args, ++pos, "-f/--file"));
+            } else if (asList("-d", "--dir").contains(arg)) {
+                options.directories.add(value(args, ++pos, "-d/--dir"));
+            } else if (asList("-", "--stdin").contains(arg)) {
+                options.stdin = true;
+            } else if (asList("-t", "--threads").contains(arg)) {
+                options.threads = positiveInt(value(args, ++pos, "-t/--threads"), "-t/--threads");
+            } else if ("--cache-dir".equals(arg)) {
+                options.cacheDirectory = value(args, ++pos, "--cache-dir");
+            } else if ("--cache-max-size".equals(arg)) {
+                options.cacheMaxSizeMb = positiveInt(value(args, ++pos, "--cache-max-size"), "--cache-max-size");
+            } else if ("--cache-max-age".equals(arg)) {
+                options.cacheMaxAgeDays = positiveInt(value(args, ++pos, "--cache-max-age"), "--cache-max-age");
+            } else if ("--apply".equals(arg)) {
+                options.applyDirectory = value(args, ++pos, "--apply");
+            } else if ("--dry-run".equals(arg)) {
+                options.dryRun = true;
+            } else if ("--branch".equals(arg)) {
+                options.branch = value(args, ++pos, "--branch");
+            } else if ("--check-redos".equals(arg)) {
+                options.checkRedos = true;
+            } else if ("--redos-budget".equals(arg)) {
+                options.redosBudgetMillis = positiveInt(value(args, ++pos, "--redos-budget"), "--redos-budget");
+            } else if ("--check-duplicates".equals(arg)) {
+                options.checkDuplicates = true;
+            } else if ("--watch".equals(arg)) {
+                options.watch = true;
+            } else if ("--server".equals(arg)) {
+                options.server = true;
+            } else if ("--client".equals(arg)) {
+                options.client = true;
+            } else if ("--port".equals(arg)) {
+                options.port = positiveInt(value(args, ++pos, "--port"), "--port");
+            } else if ("--stats".equals(arg)) {
+                options.stats = true;
+            } else if ("--format".equals(arg)) {
+                options.format = format(value(args, ++pos, "--format"));
+            } else if ("--git".equals(arg)) {
+                options.gitRepository = value(args, ++pos, "--git");
+            } else if ("--refs".equals(arg)) {
+                options.refs.add(value(args, ++pos, "--refs"));
+            } else if ("--metadata".equals(arg)) {
+                options.metadataDirectory = value(args, ++pos, "--metadata");
+            } else if ("--min-throughput".equals(arg)) {
+                options.minThroughput = positiveNumber(value(args, ++pos, "--min-throughput"), "--min-throughput");
+            } else if ("--warmup".equals(arg)) {
+                options.warmupRuns = nonNegativeInt(value(args, ++pos, "--warmup"), "--warmup");
+            } else if ("--runs".equals(arg)) {
+                options.measuredRuns = positiveInt(value(args, ++pos, "--runs"), "--runs");
+            } else if ("--rule-timeout".equals(arg)) {
+                options.ruleTimeoutMillis = positiveInt(value(args, ++pos, "--rule-timeout"), "--rule-timeout");
+            } else {
+                throw new IllegalArgumentException("Unrecognized option: " + arg);
+            }
+        }
+        if (options.dryRun && options.applyDirectory == null) {
+            throw new IllegalArgumentException("Option --dry-run requires --apply");
+        }
+        if (options.plan && (options.stdin || options.applyDirectory != null || options.watch)) {
+            throw new IllegalArgumentException("Command plan reads changed paths from stdin, it can not be combined with -/--stdin, --apply or --watch");
+        }
+        if (options.watch && (options.applyDirectory != null || options.client)) {
+            throw new IllegalArgumentException("Option --watch can not be combined with --apply or --client");
+        }
+        if (options.stats && options.watch) {
+            throw new IllegalArgumentException("Option --stats can not be combined with --watch");
+        }
+        if (options.format != null && (options.plan || options.applyDirectory != null || options.watch)) {
+            throw new IllegalArgumentException("Option --format only applies to validation, it can not be combined with plan, --apply or --watch");
+        }
+        if (!options.refs.isEmpty() && options.gitRepository == null) {
+            throw new IllegalArgumentException("Option --refs requires --git");
+        }
+        if (options.gitRepository != null && (!options.directories.isEmpty() || options.stdin || options.plan
+                || options.applyDirectory != null || options.watch || options.format != null)) {
+            throw new IllegalArgumentException("Option --git can not be combined with -d/--dir, -/--stdin, plan, --apply, --watch or --format");
+        }
+        if (options.profile != (options.metadataDirectory != null)) {
+            throw new IllegalArgumentException("Command profile requires --metadata, and --metadata only applies to profile");
+        }
+        if (options.profile && (options.stdin || options.applyDirectory != null || options.watch || options.format != null
+                || options.gitRepository != null)) {
+            throw new IllegalArgumentException("Command profile can not be combined with -/--stdin, --apply, --watch, --format or --git");
+        }
+        return options;
+    }
+
+    static String value(final String[] args, final int valuePos, final String option) {
+        if (valuePos >= args.length) {
+            throw new IllegalArgumentException("Missing argument for option " + option);
+        }
+        return args[valuePos];
+    }
+
+    static int positiveInt(final String value, final String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Option " + option + " requires a positive number: " + value);
+    }
+
+    static int nonNegativeInt(final String value, final String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Option " + option + " requires zero or a positive number: " + value);
+    }
+
+    static double positiveNumber(final String value, final String option) {
+        try {
+            double number = Double.parseDouble(value);
+            if (number > 0 && !Double.isInfinite(number)) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Option " + option + " requires a positive number: " + value);
+    }
+
+    static JsonSink.Format format(final String value) {
+        switch (value) {
+            case "text":
+                return null;
+            case "json":
+                return JsonSink.Format.JSON;
+            case "ndjson":
+                return JsonSink.Format.NDJSON;
+            default:
+                throw new IllegalArgumentException("Option --format requires text, json or ndjson: " + value);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package copado;
+
+import java.io.PrintStream;
+
+/**
+ * Output of the command line. Informative messages go to stdout and errors to stderr.
+ */
+public class Log {
+    private PrintStream stdOut;
+    private PrintStream stdErr;
+
+    public Log(PrintStream stdOut, PrintStream stdErr) {
+        this.stdErr = stdErr;
+        this.stdOut = stdOut;
+    }
+
+    public void info(String message) {
+        stdOut.println(message);
+    }
+
+    public void error(String message) {
+        stdErr.println(message);
+    }
+}
@@ -0,0 +1,23 @@
+package copado.batch;
+
+import copado.yaml.YamlValidations;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.File;
+
+/**
+ * Validation outcome of a single file inside a batch run.
+ */
+@Data
+@AllArgsConstructor
+public class BatchResult {
+    /**
+     * File that was validated
+     */
+    private File file;
+    /**
+     * Validation messages found for the file
+     */
+    private YamlValidations validations;
+}
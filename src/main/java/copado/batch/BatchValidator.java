@@ -0,0 +1,165 @@
+package copado.batch;
+
+import copado.yaml.ValidationListener;
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidationMessage;
+import copado.yaml.YamlValidations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validates many Copado YAML files in one JVM using a bounded worker pool.
+ * Results are returned in the same order the files were given.
+ */
+public class BatchValidator {
+
+    private final YamlProcessor yamlProcessor;
+    private final int threads;
+
+    public BatchValidator(final YamlProcessor yamlProcessor, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be greater than zero");
+        }
+        this.yamlProcessor = yamlProcessor;
+        this.threads = threads;
+    }
+
+    /**
+     * Validate every file on the worker pool.
+     *
+     * @param yamlFiles Files to validate
+     * @return One result per file, in the order of the input list
+     */
+    public List<BatchResult> validate(final List<File> yamlFiles) {
+        if (yamlFiles.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, yamlFiles.size()));
+        try {
+            List<Future<YamlValidations>> futures = new ArrayList<>(yamlFiles.size());
+            for (File yamlFile : yamlFiles) {
+                futures.add(executor.submit(() -> yamlProcessor.isValid(yamlFile)));
+            }
+            List<BatchResult> results = new ArrayList<>(yamlFiles.size());
+            for (int i = 0; i < yamlFiles.size(); i++) {
+                results.add(new BatchResult(yamlFiles.get(i), await(futures.get(i))));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Validate every file on the worker pool, giving each message to a sink as soon as it is found instead of
+     * collecting the results, so memory does not grow with the number of messages.
+     *
+     * @param yamlFiles Files to validate
+     * @param sink      Receives the messages and the end of each file, from the worker threads
+     * @return Number of files with validation messages
+     */
+    public int validate(final List<File> yamlFiles, final ValidationSink sink) {
+        if (yamlFiles.isEmpty()) {
+            return 0;
+        }
+        AtomicInteger invalid = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, yamlFiles.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(yamlFiles.size());
+            for (File yamlFile : yamlFiles) {
+                futures.add(executor.submit(() -> {
+                    if (validate(yamlFile, sink) > 0) {
+                        invalid.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // only an error of the sink itself gets here
+            throw new IllegalStateException("Unable to report validation results", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return invalid.get();
+    }
+
+    private int validate(final File yamlFile, final ValidationSink sink) {
+        long start = System.nanoTime();
+        int[] messages = {0};
+        ValidationListener listener = message -> {
+            messages[0]++;
+            sink.onMessage(yamlFile, message, System.nanoTime() - start);
+        };
+        try {
+            yamlProcessor.validate(yamlFile, listener);
+        } catch (RuntimeException ex) {
+            listener.onMessage(new YamlValidationMessage("Unexpected error validating YAML: " + ex, "root"));
+        }
+        sink.onFileValidated(yamlFile, messages[0], System.nanoTime() - start);
+        return messages[0];
+    }
+
+    /**
+     * Collect every YAML file (*.yml, *.yaml) below a directory, sorted by path.
+     *
+     * @param directory Root directory to scan recursively
+     * @return YAML files found
+     */
+    public static List<File> findYamlFiles(final File directory) {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(BatchValidator::isYamlFile)
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Unable to read directory " + directory, ex);
+        }
+    }
+
+    /**
+     * Whether any result in the batch has validation errors.
+     */
+    public static boolean hasErrors(final List<BatchResult> results) {
+        return results.stream().anyMatch(result -> result.getValidations().hasErrors());
+    }
+
+    private static boolean isYamlFile(final Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".yml") || name.endsWith(".yaml");
+    }
+
+    private static YamlValidations await(final Future<YamlValidations> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return failure("Validation was interrupted");
+        } catch (ExecutionException ex) {
+            return failure("Unexpected error validating YAML: " + ex.getCause());
+        }
+    }
+
+    private static YamlValidations failure(final String message) {
+        List<YamlValidationMessage> messages = new ArrayList<>();
+        messages.add(new YamlValidationMessage(message, "root"));
+        return new YamlValidations(messages);
+    }
+}
@@ -0,0 +1,141 @@
+package copado.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import copado.yaml.YamlValidationMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes the outcome of a batch as JSON records, each one as soon as it is received, so memory does not
+ * grow with the number of messages. There are three kinds of record, told apart by their type field:
+ * <ul>
+ * <li>message: file, node, message, line, column and elapsedMs since the validation of the file started</li>
+ * <li>file: file, valid, messages and durationMs, after the messages of the file</li>
+ * <li>summary: files, invalid and durationMs, the last record</li>
+ * </ul>
+ * With {@link Format#NDJSON} every record is a line. With {@link Format#JSON} the records are the elements
+ * of an array, still written one per line.
+ */
+public class JsonSink implements ValidationSink {
+
+    public enum Format {
+        JSON, NDJSON
+    }
+
+    /**
+     * Only the streaming generator is used, databind is not needed. A factory is thread-safe.
+     */
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final Format format;
+    private final Function<File, String> fileName;
+    private final Consumer<String> out;
+    private boolean firstRecord = true;
+
+    /**
+     * @param format   Output format
+     * @param fileName Name written for each file
+     * @param out      Receives each line of output
+     */
+    public JsonSink(final Format format, final Function<File, String> fileName, final Consumer<String> out) {
+        this.format = format;
+        this.fileName = fileName;
+        this.out = out;
+    }
+
+    /**
+     * Start the output, before the batch runs.
+     */
+    public synchronized void begin() {
+        if (format == Format.JSON) {
+            out.accept("[");
+        }
+    }
+
+    @Override
+    public void onMessage(final File file, final YamlValidationMessage message, final long elapsedNanos) {
+        write(generator -> {
+            generator.writeStringField("type", "message");
+            generator.writeStringField("file", fileName.apply(file));
+            generator.writeStringField("node", message.getNode());
+            generator.writeStringField("message", message.getMessage());
+            writeNumberField(generator, "line", message.getLine());
+            writeNumberField(generator, "column", message.getColumn());
+            generator.writeNumberField("elapsedMs", millis(elapsedNanos));
+        });
+    }
+
+    @Override
+    public void onFileValidated(final File file, final int messages, final long durationNanos) {
+        write(generator -> {
+            generator.writeStringField("type", "file");
+            generator.writeStringField("file", fileName.apply(file));
+            generator.writeBooleanField("valid", messages == 0);
+            generator.writeNumberField("messages", messages);
+            generator.writeNumberField("durationMs", millis(durationNanos));
+        });
+    }
+
+    /**
+     * Write the summary and end the output, after the batch runs.
+     *
+     * @param files         Number of files validated
+     * @param invalid       Number of files with messages
+     * @param durationNanos Time spent validating the batch
+     */
+    public void end(final int files, final int invalid, final long durationNanos) {
+        write(generator -> {
+            generator.writeStringField("type", "summary");
+            generator.writeNumberField("files", files);
+            generator.writeNumberField("invalid", invalid);
+            generator.writeNumberField("durationMs", millis(durationNanos));
+        });
+        if (format == Format.JSON) {
+            synchronized (this) {
+                out.accept("]");
+            }
+        }
+    }
+
+    private void write(final RecordWriter recordWriter) {
+        StringWriter record = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(record)) {
+            generator.writeStartObject();
+            recordWriter.write(generator);
+            generator.writeEndObject();
+        } catch (IOException ex) {
+            // a StringWriter does not fail
+            throw new UncheckedIOException(ex);
+        }
+        synchronized (this) {
+            out.accept(format == Format.JSON && !firstRecord ? "," + record : record.toString());
+            firstRecord = false;
+        }
+    }
+
+    private static void writeNumberField(final JsonGenerator generator, final String name, final Integer value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    /**
+     * Milliseconds with microsecond precision.
+     */
+    private static double millis(final long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private interface RecordWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
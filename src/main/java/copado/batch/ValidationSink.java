@@ -0,0 +1,30 @@
+package copado.batch;
+
+import copado.yaml.YamlValidationMessage;
+
+import java.io.File;
+
+/**
+ * Receives the outcome of a batch while it runs. Methods are called from the worker threads, so messages of
+ * different files may interleave; implementations must be thread-safe.
+ */
+public interface ValidationSink {
+
+    /**
+     * A validation message found in a file.
+     *
+     * @param file         File being validated
+     * @param message      Validation message
+     * @param elapsedNanos Time since the validation of the file started
+     */
+    void onMessage(File file, YamlValidationMessage message, long elapsedNanos);
+
+    /**
+     * A file was completely validated, after all its messages.
+     *
+     * @param file          File validated
+     * @param messages      Number of messages found, 0 when the file is valid
+     * @param durationNanos Time spent validating the file
+     */
+    void onFileValidated(File file, int messages, long durationNanos);
+}
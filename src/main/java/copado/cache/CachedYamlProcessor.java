@@ -0,0 +1,105 @@
+package copado.cache;
+
+import copado.metrics.ValidationMetrics;
+import copado.yaml.RegexAnalyzer;
+import copado.yaml.RegexChecker;
+import copado.yaml.ValidationListener;
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidationMessage;
+import copado.yaml.YamlValidations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+
+/**
+ * YamlProcessor that reuses results stored in a {@link ValidationCache}.
+ * <p>
+ * An unchanged file is answered from the cache without parsing it. A changed file is validated again,
+ * but only the regex_lib expressions never seen before are compiled.
+ */
+public class CachedYamlProcessor extends YamlProcessor {
+
+    private final ValidationCache cache;
+
+    public CachedYamlProcessor(final ValidationCache cache) {
+        this(cache, RegexAnalyzer.NONE);
+    }
+
+    /**
+     * @param cache         Cache of validation results
+     * @param regexAnalyzer Additional check of the regex_lib expressions, its key is part of the cache key
+     */
+    public CachedYamlProcessor(final ValidationCache cache, final RegexAnalyzer regexAnalyzer) {
+        this(cache, regexAnalyzer, ValidationMetrics.NONE);
+    }
+
+    /**
+     * @param cache         Cache of validation results
+     * @param regexAnalyzer Additional check of the regex_lib expressions, its key is part of the cache key
+     * @param metrics       Where the timers and counters of each file validated are recorded, files answered from the cache are not
+     */
+    public CachedYamlProcessor(final ValidationCache cache, final RegexAnalyzer regexAnalyzer, final ValidationMetrics metrics) {
+        this(cache, regexAnalyzer, metrics, false);
+    }
+
+    /**
+     * @param cache           Cache of validation results
+     * @param regexAnalyzer   Additional check of the regex_lib expressions, its key is part of the cache key
+     * @param metrics         Where the timers and counters of each file validated are recorded, files answered from the cache are not
+     * @param checkDuplicates Also report duplicate, redundant and unused entries, it is part of the cache key
+     */
+    public CachedYamlProcessor(final ValidationCache cache, final RegexAnalyzer regexAnalyzer, final ValidationMetrics metrics,
+                               final boolean checkDuplicates) {
+        super(regEx -> cache.isValidRegex(regEx, RegexChecker.COMPILE), regexAnalyzer, metrics, checkDuplicates);
+        this.cache = cache;
+    }
+
+    /**
+     * Cached results are stored whole, so the messages of a file reach the listener once it has been validated.
+     * The file is read once and the bytes hashed are the ones validated, so a save while it is validated can
+     * not store a result under the hash of another content.
+     */
+    @Override
+    public void validate(final File yamlFile, final ValidationListener listener) {
+        byte[] content;
+        try {
+            content = yamlFile.isFile() ? Files.readAllBytes(yamlFile.toPath()) : null;
+        } catch (IOException ex) {
+            content = null;
+        }
+        if (content == null) {
+            super.validate(yamlFile, listener);
+            return;
+        }
+        String contentHash = ValidationCache.hashContent(content, variant());
+        Optional<YamlValidations> cached = cache.getValidations(contentHash);
+        YamlValidations validations;
+        if (cached.isPresent()) {
+            validations = cached.get();
+        } else {
+            validations = new YamlValidations();
+            super.validate(content, validations);
+            if (!isUnreadable(validations)) {
+                cache.putValidations(contentHash, validations);
+            }
+            cache.flush();
+        }
+        validations.getYamlValidationMessages().forEach(listener::onMessage);
+    }
+
+    /**
+     * Settings that change the messages of the same content.
+     */
+    private String variant() {
+        String variant = getRegexAnalyzer() == RegexAnalyzer.NONE ? "" : getRegexAnalyzer().key();
+        return isCheckDuplicates() ? variant + "+duplicates" : variant;
+    }
+
+    private static boolean isUnreadable(final YamlValidations validations) {
+        return validations.getYamlValidationMessages().stream()
+                .map(YamlValidationMessage::getMessage)
+                .anyMatch("Unable to open YAML"::equals);
+    }
+}
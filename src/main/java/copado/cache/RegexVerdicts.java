@@ -0,0 +1,388 @@
+package copado.cache;
+
+import copado.yaml.RegexChecker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verdicts of regular expressions keyed by a 128-bit hash of their text. A YAML with many rules and replace
+ * values has millions of expanded expressions, so verdicts are not stored one per file: the segments written
+ * by every process are loaded once into open-addressing tables, and new verdicts are appended to a new segment
+ * when {@link #flush()} is called or enough of them are pending. Segments are merged into one by
+ * {@link #compact()} once there are too many of them.
+ * <p>
+ * A lookup costs about as much as compiling a simple expression, so the key is a MurmurHash3 of the characters
+ * rather than a cryptographic digest, computed once per expression, and the verdicts are spread over
+ * {@link #STRIPES} tables locked on their own, so the workers compiling expressions rarely wait for each other.
+ * <p>
+ * Instances are thread-safe.
+ */
+class RegexVerdicts {
+
+    /**
+     * Pending verdicts written to a new segment without waiting for {@link #flush()}
+     */
+    static final int FLUSH_THRESHOLD = 65536;
+    /**
+     * Segments beyond this are merged by {@link #compact()}
+     */
+    static final int MAX_SEGMENTS = 16;
+    /**
+     * Tables the verdicts are spread over by the highest bits of their key, a power of two
+     */
+    static final int STRIPES = 64;
+
+    private static final String SEGMENT_PREFIX = "verdicts-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    /**
+     * Two longs of key and one byte of verdict
+     */
+    private static final int RECORD_SIZE = 17;
+    private static final byte EMPTY = 0;
+    private static final byte INVALID = 1;
+    private static final byte VALID = 2;
+
+    private static final long SEED = ValidationCache.CACHE_VERSION.hashCode();
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final Path directory;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object flushLock = new Object();
+    private volatile boolean loaded;
+
+    /**
+     * @param directory Directory of the segments, created when the first one is written
+     */
+    RegexVerdicts(final Path directory) {
+        this.directory = directory;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripes[stripe] = new Stripe();
+        }
+    }
+
+    /**
+     * @return Verdict of the expression, empty when it was never checked
+     */
+    Optional<Boolean> get(final String regEx) {
+        long[] key = key(regEx);
+        byte verdict = get(key[0], key[1]);
+        return verdict == EMPTY ? Optional.empty() : Optional.of(verdict == VALID);
+    }
+
+    void put(final String regEx, final boolean valid) {
+        long[] key = key(regEx);
+        put(key[0], key[1], valid);
+    }
+
+    /**
+     * Verdict of the expression, checked and remembered when it was never checked, hashing it once.
+     *
+     * @param checker Decides the verdicts missing, it must be thread-safe
+     */
+    boolean isValid(final String regEx, final RegexChecker checker) {
+        long[] key = key(regEx);
+        byte verdict = get(key[0], key[1]);
+        if (verdict != EMPTY) {
+            return verdict == VALID;
+        }
+        boolean valid = checker.isValid(regEx);
+        put(key[0], key[1], valid);
+        return valid;
+    }
+
+    /**
+     * Write the pending verdicts to a new segment. A segment that can not be written only costs future misses.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            ByteBuffer records = null;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    if (stripe.pending.position() == 0) {
+                        continue;
+                    }
+                    if (records == null) {
+                        records = ByteBuffer.allocate(Math.max(pending.get(), 1) * RECORD_SIZE);
+                    }
+                    if (records.remaining() < stripe.pending.position()) {
+                        records = ByteBuffer.allocate(records.capacity() + stripe.pending.position() * 2).put((ByteBuffer) records.flip());
+                    }
+                    records.put((ByteBuffer) stripe.pending.flip());
+                    pending.addAndGet(-stripe.pending.limit() / RECORD_SIZE);
+                    stripe.pending = ByteBuffer.allocate(RECORD_SIZE * 64);
+                }
+            }
+            if (records == null) {
+                return;
+            }
+            try {
+                writeSegment(records.array(), records.position());
+            } catch (IOException ex) {
+                // a cache that can not be written only costs a future miss
+            }
+        }
+    }
+
+    /**
+     * Merge the segments on disk into one once there are more than {@link #MAX_SEGMENTS}. It must only run
+     * while holding the eviction lock of the cache, so two processes do not merge the same segments.
+     */
+    void compact() throws IOException {
+        synchronized (flushLock) {
+            List<Path> segments = segments();
+            if (segments.size() <= MAX_SEGMENTS) {
+                return;
+            }
+            RegexVerdicts merged = new RegexVerdicts(directory);
+            merged.loaded = true;
+            for (Path segment : segments) {
+                merged.read(segment);
+            }
+            int size = 0;
+            for (Stripe stripe : merged.stripes) {
+                size += stripe.size;
+            }
+            ByteBuffer records = ByteBuffer.allocate(size * RECORD_SIZE);
+            for (Stripe stripe : merged.stripes) {
+                for (int slot = 0; slot < stripe.verdicts.length; slot++) {
+                    if (stripe.verdicts[slot] != EMPTY) {
+                        records.putLong(stripe.keys[slot * 2]).putLong(stripe.keys[slot * 2 + 1]).put(stripe.verdicts[slot]);
+                    }
+                }
+            }
+            writeSegment(records.array(), records.position());
+            for (Path segment : segments) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    private byte get(final long keyHigh, final long keyLow) {
+        load();
+        Stripe stripe = stripe(keyHigh);
+        synchronized (stripe) {
+            return stripe.verdicts[stripe.slot(keyHigh, keyLow)];
+        }
+    }
+
+    private void put(final long keyHigh, final long keyLow, final boolean valid) {
+        load();
+        byte verdict = valid ? VALID : INVALID;
+        Stripe stripe = stripe(keyHigh);
+        synchronized (stripe) {
+            if (stripe.verdicts[stripe.slot(keyHigh, keyLow)] == verdict) {
+                return;
+            }
+            stripe.insert(keyHigh, keyLow, verdict);
+            if (stripe.pending.remaining() < RECORD_SIZE) {
+                stripe.pending = ByteBuffer.allocate(stripe.pending.capacity() * 2).put((ByteBuffer) stripe.pending.flip());
+            }
+            stripe.pending.putLong(keyHigh).putLong(keyLow).put(verdict);
+        }
+        if (pending.incrementAndGet() >= FLUSH_THRESHOLD) {
+            synchronized (flushLock) {
+                // another thread may have written them while this one waited
+                if (pending.get() >= FLUSH_THRESHOLD) {
+                    flush();
+                }
+            }
+        }
+    }
+
+    private Stripe stripe(final long keyHigh) {
+        return stripes[(int) (keyHigh >>> (Long.SIZE - Integer.numberOfTrailingZeros(STRIPES)))];
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (loaded) {
+                return;
+            }
+            try {
+                for (Path segment : segments()) {
+                    read(segment);
+                }
+            } catch (IOException ex) {
+                // verdicts not read are checked again
+            }
+            loaded = true;
+        }
+    }
+
+    private void read(final Path segment) throws IOException {
+        ByteBuffer records;
+        try {
+            records = ByteBuffer.wrap(Files.readAllBytes(segment));
+            // a segment used is kept by eviction
+            Files.setLastModifiedTime(segment, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException ex) {
+            // merged or evicted by another process
+            return;
+        }
+        while (records.remaining() >= RECORD_SIZE) {
+            long keyHigh = records.getLong();
+            long keyLow = records.getLong();
+            byte verdict = records.get();
+            if (verdict == VALID || verdict == INVALID) {
+                Stripe stripe = stripe(keyHigh);
+                synchronized (stripe) {
+                    stripe.insert(keyHigh, keyLow, verdict);
+                }
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private void writeSegment(final byte[] records, final int length) throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, ".tmp-", null);
+        try {
+            Files.write(temporary, length == records.length ? records : Arrays.copyOf(records, length));
+            Path segment = directory.resolve(SEGMENT_PREFIX + UUID.randomUUID() + SEGMENT_SUFFIX);
+            try {
+                Files.move(temporary, segment, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, segment);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * MurmurHash3 x64 128 of the UTF-16 characters of the expression, seeded with the cache version.
+     *
+     * @return High and low 64 bits of the key
+     */
+    static long[] key(final String regEx) {
+        long h1 = SEED;
+        long h2 = SEED;
+        int length = regEx.length();
+        int block = 0;
+        for (; block + 8 <= length; block += 8) {
+            h1 ^= mixK1(chars(regEx, block, 4));
+            h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+            h2 ^= mixK2(chars(regEx, block + 4, 4));
+            h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+        }
+        int tail = length - block;
+        h1 ^= mixK1(chars(regEx, block, Math.min(tail, 4)));
+        h2 ^= mixK2(chars(regEx, block + 4, Math.max(tail - 4, 0)));
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private static long chars(final String text, final int start, final int count) {
+        long chars = 0;
+        for (int i = 0; i < count; i++) {
+            chars |= (long) text.charAt(start + i) << (i * Character.SIZE);
+        }
+        return chars;
+    }
+
+    private static long mixK1(final long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(final long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(final long hash) {
+        long mixed = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return mixed ^ (mixed >>> 33);
+    }
+
+    /**
+     * Open-addressing table of the verdicts whose key starts with the same bits, with the records not written
+     * yet. It is guarded by its own monitor.
+     */
+    private static class Stripe {
+        /**
+         * High and low 64 bits of the key of each slot, side by side
+         */
+        private long[] keys = new long[32];
+        private byte[] verdicts = new byte[16];
+        private int size;
+        private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 64);
+
+        void insert(final long keyHigh, final long keyLow, final byte verdict) {
+            int slot = slot(keyHigh, keyLow);
+            if (verdicts[slot] == EMPTY) {
+                if ((size + 1) * 2 > verdicts.length) {
+                    grow();
+                    slot = slot(keyHigh, keyLow);
+                }
+                keys[slot * 2] = keyHigh;
+                keys[slot * 2 + 1] = keyLow;
+                size++;
+            }
+            verdicts[slot] = verdict;
+        }
+
+        /**
+         * @return Slot of the key, or the empty slot where it goes
+         */
+        int slot(final long keyHigh, final long keyLow) {
+            int mask = verdicts.length - 1;
+            // the key is a hash already, its low bits are spread evenly
+            int slot = (int) keyLow & mask;
+            while (verdicts[slot] != EMPTY && (keys[slot * 2] != keyHigh || keys[slot * 2 + 1] != keyLow)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            byte[] oldVerdicts = verdicts;
+            keys = new long[oldKeys.length * 2];
+            verdicts = new byte[oldVerdicts.length * 2];
+            for (int slot = 0; slot < oldVerdicts.length; slot++) {
+                if (oldVerdicts[slot] != EMPTY) {
+                    int target = slot(oldKeys[slot * 2], oldKeys[slot * 2 + 1]);
+                    keys[target * 2] = oldKeys[slot * 2];
+                    keys[target * 2 + 1] = oldKeys[slot * 2 + 1];
+                    verdicts[target] = oldVerdicts[slot];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package copado.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import copado.yaml.RegexChecker;
+import copado.yaml.YamlValidations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of validation results addressed by content hash.
+ * <p>
+ * Two kinds of entries are kept: the validation result of a whole YAML, keyed by the SHA-256 of the
+ * file content, and the verdict of each regex_lib expression, keyed by a 128-bit hash of the expression.
+ * Results are one file each; verdicts are batched in segment files, since the expanded expressions of a
+ * single YAML can be millions, and new ones are only written by {@link #flush()}. Files are written to a
+ * temporary file and atomically moved into place, so several processes can share the same directory; an
+ * entry that can not be read is handled as a miss. Eviction removes files older than the maximum age and
+ * then the least recently used ones until the cache fits in the maximum size.
+ */
+public class ValidationCache {
+
+    /**
+     * Part of every key, it must change whenever validation rules change so old results are not reused.
+     */
+    static final String CACHE_VERSION = "copado-yaml-cli:6";
+
+    private static final String FILES_DIRECTORY = "files";
+    private static final String REGEX_DIRECTORY = "regex";
+    private static final String LOCK_FILE = ".lock";
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final RegexVerdicts regexVerdicts;
+
+    /**
+     * @param directory Cache directory, created when it does not exist
+     * @param maxBytes  Maximum size of the cache in bytes
+     * @param maxAgeDays Entries not used in this number of days are evicted
+     */
+    public ValidationCache(final File directory, final long maxBytes, final long maxAgeDays) {
+        this.directory = directory.toPath();
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = TimeUnit.DAYS.toMillis(maxAgeDays);
+        this.regexVerdicts = new RegexVerdicts(this.directory.resolve(REGEX_DIRECTORY));
+    }
+
+    /**
+     * Hash of a YAML file content, used as key of its validation result.
+     *
+     * @param yamlFile File to hash, read as a stream
+     * @param variant  Settings that change the validation result, empty for the default ones
+     * @return Hexadecimal SHA-256
+     * @throws IOException when the file can not be read
+     */
+    public static String hashFile(final File yamlFile, final String variant) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(CACHE_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update(variant.getBytes(StandardCharsets.UTF_8));
+        try (InputStream input = new DigestInputStream(Files.newInputStream(yamlFile.toPath()), digest)) {
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) != -1) {
+                // digest is updated while reading
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hash of a YAML content already read, used as key of its validation result. It is the same as
+     * {@link #hashFile} for a file with this content.
+     *
+     * @param content YAML content
+     * @param variant Settings that change the validation result, empty for the default ones
+     * @return Hexadecimal SHA-256
+     */
+    public static String hashContent(final byte[] content, final String variant) {
+        MessageDigest digest = newDigest();
+        digest.update(CACHE_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update(variant.getBytes(StandardCharsets.UTF_8));
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    public Optional<YamlValidations> getValidations(final String contentHash) {
+        return read(entry(FILES_DIRECTORY, contentHash)).flatMap(bytes -> {
+            try {
+                return Optional.of(jsonMapper.readValue(bytes, YamlValidations.class));
+            } catch (IOException ex) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    public void putValidations(final String contentHash, final YamlValidations validations) {
+        try {
+            write(entry(FILES_DIRECTORY, contentHash), jsonMapper.writeValueAsBytes(validations));
+        } catch (IOException ex) {
+            // a cache that can not be written only costs a future miss
+        }
+    }
+
+    /**
+     * @return Cached verdict of the regex, empty when it was never checked
+     */
+    public Optional<Boolean> getRegexVerdict(final String regEx) {
+        return regexVerdicts.get(regEx);
+    }
+
+    /**
+     * @param checker Decides the verdict when the regex was never checked, it must be thread-safe
+     * @return Cached verdict of the regex, checked and remembered when it was never checked
+     */
+    public boolean isValidRegex(final String regEx, final RegexChecker checker) {
+        return regexVerdicts.isValid(regEx, checker);
+    }
+
+    /**
+     * Remember the verdict of a regex. It is visible to this instance at once, and to other processes
+     * after {@link #flush()}.
+     */
+    public void putRegexVerdict(final String regEx, final boolean valid) {
+        regexVerdicts.put(regEx, valid);
+    }
+
+    /**
+     * Write the regex verdicts not written yet.
+     */
+    public void flush() {
+        regexVerdicts.flush();
+    }
+
+    /**
+     * Remove entries older than the maximum age, then the least recently used ones until the cache
+     * fits in its maximum size. Pending regex verdicts are written first and their segments merged when
+     * there are too many. When another process is already evicting, only the verdicts are written.
+     */
+    public void evict() {
+        flush();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock != null) {
+                regexVerdicts.compact();
+                evictEntries();
+            }
+        } catch (IOException ex) {
+            // eviction is retried on the next run
+        }
+    }
+
+    private void evictEntries() throws IOException {
+        List<CacheEntry> entries = listEntries();
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        long size = 0;
+        List<CacheEntry> kept = new ArrayList<>();
+        for (CacheEntry entry : entries) {
+            if (entry.lastUsed < oldest) {
+                delete(entry.path);
+            } else {
+                kept.add(entry);
+                size += entry.size;
+            }
+        }
+        kept.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        for (CacheEntry entry : kept) {
+            if (size <= maxBytes) {
+                break;
+            }
+            delete(entry.path);
+            size -= entry.size;
+        }
+    }
+
+    private List<CacheEntry> listEntries() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .map(CacheEntry::of)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path entry(final String kind, final String hash) {
+        return directory.resolve(kind).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Optional<byte[]> read(final Path entry) {
+        try {
+            byte[] bytes = Files.readAllBytes(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(bytes);
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private void write(final Path entry, final byte[] content) throws IOException {
+        Files.createDirectories(entry.getParent());
+        Path temporary = Files.createTempFile(entry.getParent(), ".tmp-", null);
+        try {
+            Files.write(temporary, content);
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void delete(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // the entry is in use or already gone, it is tried again on next eviction
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte value : bytes) {
+            hex.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static class CacheEntry {
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        private CacheEntry(final Path path, final long size, final long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        private static Optional<CacheEntry> of(final Path path) {
+            try {
+                return Optional.of(new CacheEntry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+            } catch (IOException ex) {
+                return Optional.empty();
+            }
+        }
+    }
+}
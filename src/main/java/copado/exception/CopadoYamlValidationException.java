@@ -18,4 +18,16 @@ public class CopadoYamlValidationException extends RuntimeException {
      * Error message
      */
     private String message;
+    /**
+     * Line where the error was found, null when unknown
+     */
+    private Integer line;
+    /**
+     * Column where the error was found, null when unknown
+     */
+    private Integer column;
+
+    public CopadoYamlValidationException(final String node, final String message) {
+        this(node, message, null, null);
+    }
 }
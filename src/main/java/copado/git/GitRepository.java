@@ -0,0 +1,312 @@
+package copado.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reads refs and blobs of a local repository through the {@code git} executable, without checking anything out.
+ * Blobs are looked up and read with a single {@code git cat-file} process each time, whatever their number.
+ * <p>
+ * Instances hold no mutable state and may be shared between threads.
+ */
+public class GitRepository {
+
+    private static final Pattern BLOB_HEADER = Pattern.compile("[0-9a-f]{40,64} blob \\d+");
+
+    private final File directory;
+    private final String executable;
+
+    /**
+     * @param directory Working tree or bare repository
+     */
+    public GitRepository(final File directory) {
+        this(directory, "git");
+    }
+
+    /**
+     * @param directory  Working tree or bare repository
+     * @param executable git executable, looked up in the PATH when it has no directory
+     */
+    public GitRepository(final File directory, final String executable) {
+        this.directory = directory;
+        this.executable = executable;
+    }
+
+    /**
+     * Revisions selected by a pattern: refs matching it as given to {@code git for-each-ref}, such as
+     * {@code refs/heads/release/*}, the commits of a range such as {@code v1.0..main}, newest first, or else
+     * the revision itself when it names a commit.
+     *
+     * @param pattern Ref pattern, range or revision
+     * @return Ref names or commit ids, empty when nothing matches
+     * @throws IOException when git can not be run or fails
+     */
+    public List<String> resolveRefs(final String pattern) throws IOException {
+        if (pattern.contains("..")) {
+            return lines(run(null, "rev-list", pattern));
+        }
+        List<String> refs = lines(run(null, "for-each-ref", "--format=%(refname)", pattern));
+        if (refs.isEmpty() && exists(pattern + "^{commit}")) {
+            refs.add(pattern);
+        }
+        return refs;
+    }
+
+    /**
+     * Look up blobs by name in one {@code git cat-file --batch-check} process.
+     *
+     * @param objects Object names, such as {@code refs/heads/main:Copado.yml}
+     * @return Id of each blob in the same order, null when the name does not exist or is not a blob
+     * @throws IOException when git can not be run or fails
+     */
+    public List<String> blobIds(final List<String> objects) throws IOException {
+        List<String> ids = new ArrayList<>(objects.size());
+        for (String line : lines(run(objects, "cat-file", "--batch-check"))) {
+            ids.add(BLOB_HEADER.matcher(line).matches() ? line.substring(0, line.indexOf(' ')) : null);
+        }
+        if (ids.size() != objects.size()) {
+            throw new IOException("Unexpected output of git cat-file --batch-check");
+        }
+        return ids;
+    }
+
+    /**
+     * Stream the content of blobs from one {@code git cat-file --batch} process.
+     *
+     * @param ids    Blob ids
+     * @param reader Receives each blob as it is read, in the same order, on the calling thread
+     * @throws IOException when git can not be run or fails
+     */
+    public void readBlobs(final List<String> ids, final BlobReader reader) throws IOException {
+        Process process = start("cat-file", "--batch");
+        ErrorReader errors = new ErrorReader(process.getErrorStream());
+        errors.start();
+        InputFeeder feeder = new InputFeeder(process.getOutputStream(), ids);
+        feeder.start();
+        try (InputStream out = new BufferedInputStream(process.getInputStream())) {
+            for (String id : ids) {
+                String header = readLine(out);
+                if (!BLOB_HEADER.matcher(header).matches()) {
+                    throw new IOException("Unable to read blob " + id + ": " + header);
+                }
+                byte[] content = new byte[Integer.parseInt(header.substring(header.lastIndexOf(' ') + 1))];
+                readFully(out, content);
+                // every blob is followed by a line feed
+                out.read();
+                reader.read(id, content);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // git may be blocked writing blobs nobody reads anymore
+            process.destroy();
+            throw ex;
+        }
+        finish(process, feeder, errors, "cat-file --batch");
+    }
+
+    private boolean exists(final String revision) throws IOException {
+        Process process = start("rev-parse", "--verify", "--quiet", revision);
+        ErrorReader errors = new ErrorReader(process.getErrorStream());
+        errors.start();
+        process.getOutputStream().close();
+        drain(process.getInputStream());
+        int exitCode = waitFor(process);
+        errors.await();
+        return exitCode == 0;
+    }
+
+    /**
+     * Run a git command to completion.
+     *
+     * @param input Lines written to its standard input, null for none
+     * @return Its standard output
+     */
+    private String run(final List<String> input, final String... args) throws IOException {
+        Process process = start(args);
+        ErrorReader errors = new ErrorReader(process.getErrorStream());
+        errors.start();
+        InputFeeder feeder = new InputFeeder(process.getOutputStream(), input);
+        feeder.start();
+        String output;
+        try {
+            output = new String(drain(process.getInputStream()), StandardCharsets.UTF_8);
+        } finally {
+            finish(process, feeder, errors, String.join(" ", args));
+        }
+        return output;
+    }
+
+    private Process start(final String... args) throws IOException {
+        List<String> command = new ArrayList<>(args.length + 1);
+        command.add(executable);
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).directory(directory).start();
+    }
+
+    private void finish(final Process process, final InputFeeder feeder, final ErrorReader errors,
+                        final String command) throws IOException {
+        int exitCode = waitFor(process);
+        String error = errors.await();
+        try {
+            feeder.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (exitCode != 0) {
+            throw new IOException("git " + command + " failed" + (error.isEmpty() ? "" : ": " + error));
+        }
+        if (feeder.failure != null) {
+            throw feeder.failure;
+        }
+    }
+
+    private static int waitFor(final Process process) throws IOException {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException ex) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for git", ex);
+        }
+    }
+
+    private static List<String> lines(final String output) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(output))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static byte[] drain(final InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int next;
+        while ((next = in.read()) != '\n') {
+            if (next < 0) {
+                throw new EOFException("Unexpected end of git output");
+            }
+            line.write(next);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(final InputStream in, final byte[] content) throws IOException {
+        int offset = 0;
+        while (offset < content.length) {
+            int read = in.read(content, offset, content.length - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of git output");
+            }
+            offset += read;
+        }
+    }
+
+    @FunctionalInterface
+    public interface BlobReader {
+        /**
+         * @param id      Blob id
+         * @param content Blob content, owned by the reader
+         */
+        void read(String id, byte[] content) throws IOException;
+    }
+
+    /**
+     * Writes the standard input of a git process while its output is read, so neither side blocks on a full pipe.
+     */
+    private static class InputFeeder extends Thread {
+        private final OutputStream stdin;
+        private final List<String> lines;
+        private IOException failure;
+
+        InputFeeder(final OutputStream stdin, final List<String> lines) {
+            super("git-input");
+            setDaemon(true);
+            this.stdin = stdin;
+            this.lines = lines;
+        }
+
+        @Override
+        public void run() {
+            try (Writer writer = new OutputStreamWriter(stdin, StandardCharsets.UTF_8)) {
+                if (lines != null) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+    }
+
+    /**
+     * Reads the standard error of a git process while its output is read, so git does not block writing
+     * more errors than the pipe holds.
+     */
+    private static class ErrorReader extends Thread {
+        private final InputStream stderr;
+        private final ByteArrayOutputStream error = new ByteArrayOutputStream();
+
+        ErrorReader(final InputStream stderr) {
+            super("git-error");
+            setDaemon(true);
+            this.stderr = stderr;
+        }
+
+        @Override
+        public void run() {
+            try (InputStream in = stderr) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    error.write(buffer, 0, read);
+                }
+            } catch (IOException ex) {
+                // the process is gone, what was read is reported
+            }
+        }
+
+        /**
+         * @return Everything git wrote to its standard error, once it is closed
+         */
+        String await() {
+            try {
+                join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return new String(error.toByteArray(), StandardCharsets.UTF_8).trim();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package copado.git;
+
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidationMessage;
+import copado.yaml.YamlValidations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Validates the Copado YAML of many refs of a git repository without checking them out. Refs sharing the
+ * same content share the same blob, so each distinct blob is validated once: blobs are streamed from a single
+ * {@code git cat-file --batch} process and validated in memory on a bounded worker pool while the next ones
+ * are read.
+ */
+public class GitValidator {
+
+    private final GitRepository repository;
+    private final YamlProcessor yamlProcessor;
+    private final int threads;
+
+    public GitValidator(final GitRepository repository, final YamlProcessor yamlProcessor, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be greater than zero");
+        }
+        this.repository = repository;
+        this.yamlProcessor = yamlProcessor;
+        this.threads = threads;
+    }
+
+    /**
+     * Validate the YAML files at every ref.
+     *
+     * @param refPatterns Ref patterns, ranges or revisions, see {@link GitRepository#resolveRefs(String)}
+     * @param paths       Paths of the YAML files inside the repository
+     * @return One result per ref and path, refs in the order they are selected
+     * @throws IOException when git can not be run or fails
+     */
+    public List<RefResult> validate(final List<String> refPatterns, final List<String> paths) throws IOException {
+        Set<String> refs = new LinkedHashSet<>();
+        for (String pattern : refPatterns) {
+            refs.addAll(repository.resolveRefs(pattern));
+        }
+        List<String> refList = new ArrayList<>(refs.size() * paths.size());
+        List<String> pathList = new ArrayList<>(refs.size() * paths.size());
+        List<String> objects = new ArrayList<>(refs.size() * paths.size());
+        for (String ref : refs) {
+            for (String path : paths) {
+                refList.add(ref);
+                pathList.add(path);
+                objects.add(ref + ":" + path);
+            }
+        }
+        List<String> blobIds = objects.isEmpty() ? new ArrayList<>() : repository.blobIds(objects);
+        Set<String> distinct = new LinkedHashSet<>(blobIds);
+        distinct.remove(null);
+
+        Map<String, YamlValidations> byBlob = validateBlobs(new ArrayList<>(distinct));
+        List<RefResult> results = new ArrayList<>(objects.size());
+        for (int i = 0; i < objects.size(); i++) {
+            String blobId = blobIds.get(i);
+            results.add(new RefResult(refList.get(i), pathList.get(i), blobId, blobId != null ? byBlob.get(blobId) : null));
+        }
+        return results;
+    }
+
+    private Map<String, YamlValidations> validateBlobs(final List<String> blobIds) throws IOException {
+        Map<String, YamlValidations> validations = new HashMap<>();
+        if (blobIds.isEmpty()) {
+            return validations;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, blobIds.size()));
+        // blobs wait in memory for a worker, a few per thread keep every worker busy
+        Semaphore pending = new Semaphore(threads * 2);
+        Map<String, Future<YamlValidations>> futures = new HashMap<>();
+        try {
+            repository.readBlobs(blobIds, (id, content) -> {
+                pending.acquireUninterruptibly();
+                futures.put(id, executor.submit(() -> {
+                    try {
+                        return yamlProcessor.isValid(new ByteArrayInputStream(content));
+                    } finally {
+                        pending.release();
+                    }
+                }));
+            });
+            futures.forEach((id, future) -> validations.put(id, await(future)));
+            return validations;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static YamlValidations await(final Future<YamlValidations> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return failure("Validation was interrupted");
+        } catch (ExecutionException ex) {
+            return failure("Unexpected error validating YAML: " + ex.getCause());
+        }
+    }
+
+    private static YamlValidations failure(final String message) {
+        List<YamlValidationMessage> messages = new ArrayList<>();
+        messages.add(new YamlValidationMessage(message, "root"));
+        return new YamlValidations(messages);
+    }
+}
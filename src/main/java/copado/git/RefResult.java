@@ -0,0 +1,33 @@
+package copado.git;
+
+import copado.yaml.YamlValidations;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Validation outcome of a Copado YAML at a ref of a git repository.
+ */
+@Data
+@AllArgsConstructor
+public class RefResult {
+    /**
+     * Ref name or commit id
+     */
+    private String ref;
+    /**
+     * Path of the YAML inside the repository
+     */
+    private String path;
+    /**
+     * Id of the blob with the YAML content at the ref, null when the path does not exist there
+     */
+    private String blobId;
+    /**
+     * Validation messages found for the blob, shared by every ref with the same blob; null when it does not exist
+     */
+    private YamlValidations validations;
+
+    public boolean isFound() {
+        return blobId != null;
+    }
+}
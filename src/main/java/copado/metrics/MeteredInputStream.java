@@ -0,0 +1,42 @@
+package copado.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read and the time spent waiting for them.
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    private final ValidationMetrics metrics;
+
+    MeteredInputStream(final InputStream in, final ValidationMetrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = metrics.start();
+        int read = super.read();
+        metrics.bytesRead(read < 0 ? 0 : 1, start);
+        return read;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        long start = metrics.start();
+        int read = super.read(buffer, offset, length);
+        metrics.bytesRead(Math.max(read, 0), start);
+        return read;
+    }
+
+    @Override
+    public long skip(final long count) throws IOException {
+        long start = metrics.start();
+        long skipped = super.skip(count);
+        metrics.bytesRead(skipped, start);
+        return skipped;
+    }
+}
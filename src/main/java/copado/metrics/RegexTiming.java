@@ -0,0 +1,16 @@
+package copado.metrics;
+
+import lombok.Value;
+
+/**
+ * Time spent compiling a regular expression.
+ */
+@Value
+public class RegexTiming {
+    /**
+     * regex_lib name, or rule name for an expression expanded with a replace value
+     */
+    private String node;
+    private String regEx;
+    private long nanos;
+}
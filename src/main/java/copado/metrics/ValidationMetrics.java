@@ -0,0 +1,365 @@
+package copado.metrics;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers and counters of the validations run by a {@link copado.yaml.YamlProcessor}: bytes read, regex_lib
+ * entries, rules and expanded expressions, the time spent on each phase, the slowest expressions to compile
+ * and the memory allocated. Several files may be validated at once, so every counter is thread-safe and
+ * adds up the work of all the threads.
+ * <p>
+ * Parsing is interleaved with the checks of each entry, so its time is what is left of the time of each
+ * file after reading and checking. Expanded expressions are compiled on a fork-join pool while the file is
+ * parsed; their compile time is the sum over the pool threads and only the time waiting for them counts
+ * against the file. Allocation is only measured on the threads that parse the files.
+ */
+public class ValidationMetrics implements ValidationMetricsMXBean {
+
+    /**
+     * Metrics that record nothing, without reading the clock.
+     */
+    public static final ValidationMetrics NONE = new ValidationMetrics(0, false);
+
+    public static final String DOMAIN = "copado.yaml";
+
+    /**
+     * Slowest expressions kept by default
+     */
+    public static final int SLOWEST_REGEXES = 10;
+
+    public enum Phase {
+        READ("read"),
+        PARSE("parse"),
+        REGEX_COMPILE("regex compile"),
+        REGEX_ANALYSIS("regex analysis"),
+        RULE_CHECK("rule checks"),
+        EXPANDED_REGEX_COMPILE("expanded regex compile"),
+        EXPANDED_REGEX_WAIT("expanded regex wait");
+
+        private final String label;
+
+        Phase(final String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final boolean enabled;
+    private final int slowestLimit;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder regexes = new LongAdder();
+    private final LongAdder rules = new LongAdder();
+    private final LongAdder expandedRegexes = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    /**
+     * Slowest expressions, fastest on top so it is the one replaced
+     */
+    private final PriorityQueue<RegexTiming> slowest = new PriorityQueue<>(Comparator.comparingLong(RegexTiming::getNanos));
+    /**
+     * Time an expression must exceed to enter the slowest ones, read without the lock
+     */
+    private volatile long slowestThreshold = -1;
+    private volatile boolean allocationReported = true;
+
+    public ValidationMetrics() {
+        this(SLOWEST_REGEXES, true);
+    }
+
+    /**
+     * @param slowestLimit Slowest expressions to keep
+     */
+    public ValidationMetrics(final int slowestLimit) {
+        this(slowestLimit, true);
+    }
+
+    private ValidationMetrics(final int slowestLimit, final boolean enabled) {
+        this.enabled = enabled;
+        this.slowestLimit = slowestLimit;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Start of a measure, to be given to the method recording it
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time of a phase that started at {@code start}.
+     */
+    public void record(final Phase phase, final long start) {
+        if (enabled) {
+            phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record the compilation of a regex_lib expression.
+     */
+    public void regexCompiled(final String node, final String regEx, final long start) {
+        if (enabled) {
+            regexes.increment();
+            compiled(Phase.REGEX_COMPILE, node, regEx, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record the compilation of an expression expanded with a replace value.
+     */
+    public void expandedRegexCompiled(final String node, final String regEx, final long start) {
+        if (enabled) {
+            expandedRegexes.increment();
+            compiled(Phase.EXPANDED_REGEX_COMPILE, node, regEx, System.nanoTime() - start);
+        }
+    }
+
+    public void ruleChecked(final long start) {
+        if (enabled) {
+            rules.increment();
+            phaseNanos[Phase.RULE_CHECK.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    void bytesRead(final long bytes, final long start) {
+        if (enabled) {
+            bytesRead.add(bytes);
+            phaseNanos[Phase.READ.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Count the bytes read from a stream and the time spent reading them.
+     *
+     * @param in Stream with the content of a file
+     * @return Stream to read the content from
+     */
+    public InputStream meter(final InputStream in) {
+        return enabled ? new MeteredInputStream(in, this) : in;
+    }
+
+    /**
+     * @return Bytes allocated so far by the current thread, to be given to {@link #fileValidated}
+     */
+    public long threadAllocatedBytes() {
+        return enabled ? Allocation.currentThread() : -1;
+    }
+
+    /**
+     * Record a file validated on the current thread.
+     *
+     * @param start          Start of its validation
+     * @param allocatedStart {@link #threadAllocatedBytes()} at the start of its validation
+     */
+    public void fileValidated(final long start, final long allocatedStart) {
+        if (enabled) {
+            files.increment();
+            totalNanos.add(System.nanoTime() - start);
+            long allocated = Allocation.currentThread();
+            if (allocated < 0 || allocatedStart < 0) {
+                allocationReported = false;
+            } else {
+                allocatedBytes.add(allocated - allocatedStart);
+            }
+        }
+    }
+
+    public long getNanos(final Phase phase) {
+        if (phase != Phase.PARSE) {
+            return phaseNanos[phase.ordinal()].sum();
+        }
+        long checks = 0;
+        for (Phase counted : new Phase[]{Phase.READ, Phase.REGEX_COMPILE, Phase.REGEX_ANALYSIS, Phase.RULE_CHECK, Phase.EXPANDED_REGEX_WAIT}) {
+            checks += phaseNanos[counted.ordinal()].sum();
+        }
+        return Math.max(0, totalNanos.sum() - checks);
+    }
+
+    /**
+     * @return The slowest expressions to compile, slowest first
+     */
+    public synchronized List<RegexTiming> getSlowest() {
+        List<RegexTiming> timings = new ArrayList<>(slowest);
+        timings.sort(Comparator.comparingLong(RegexTiming::getNanos).reversed());
+        return timings;
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getRegexes() {
+        return regexes.sum();
+    }
+
+    @Override
+    public long getRules() {
+        return rules.sum();
+    }
+
+    @Override
+    public long getExpandedRegexes() {
+        return expandedRegexes.sum();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocationReported ? allocatedBytes.sum() : -1;
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return millis(totalNanos.sum());
+    }
+
+    @Override
+    public double getReadMillis() {
+        return millis(getNanos(Phase.READ));
+    }
+
+    @Override
+    public double getParseMillis() {
+        return millis(getNanos(Phase.PARSE));
+    }
+
+    @Override
+    public double getRegexCompileMillis() {
+        return millis(getNanos(Phase.REGEX_COMPILE));
+    }
+
+    @Override
+    public double getRegexAnalysisMillis() {
+        return millis(getNanos(Phase.REGEX_ANALYSIS));
+    }
+
+    @Override
+    public double getRuleCheckMillis() {
+        return millis(getNanos(Phase.RULE_CHECK));
+    }
+
+    @Override
+    public double getExpandedRegexCompileMillis() {
+        return millis(getNanos(Phase.EXPANDED_REGEX_COMPILE));
+    }
+
+    @Override
+    public double getExpandedRegexWaitMillis() {
+        return millis(getNanos(Phase.EXPANDED_REGEX_WAIT));
+    }
+
+    @Override
+    public String[] getSlowestRegexes() {
+        return getSlowest().stream()
+                .map(timing -> millis(timing.getNanos()) + " " + timing.getNode() + ": " + timing.getRegEx())
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (LongAdder counter : new LongAdder[]{files, bytesRead, regexes, rules, expandedRegexes, allocatedBytes, totalNanos}) {
+            counter.reset();
+        }
+        for (LongAdder phase : phaseNanos) {
+            phase.reset();
+        }
+        slowest.clear();
+        slowestThreshold = -1;
+        allocationReported = true;
+    }
+
+    /**
+     * Publish the metrics on the platform MBean server.
+     *
+     * @param name Name of these metrics, such as the component that owns them
+     * @return Name the MBean was registered with
+     * @throws IllegalStateException when it can not be registered, for instance because the name is taken
+     */
+    public ObjectName register(final String name) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=ValidationMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException ex) {
+            throw new IllegalStateException("Unable to register validation metrics " + name, ex);
+        }
+    }
+
+    /**
+     * Remove an MBean published with {@link #register(String)}.
+     */
+    public static void unregister(final ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (InstanceNotFoundException ex) {
+            // already removed
+        } catch (JMException ex) {
+            throw new IllegalStateException("Unable to unregister validation metrics " + objectName, ex);
+        }
+    }
+
+    private void compiled(final Phase phase, final String node, final String regEx, final long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+        if (slowestLimit > 0 && nanos > slowestThreshold) {
+            synchronized (this) {
+                slowest.add(new RegexTiming(node, regEx, nanos));
+                if (slowest.size() > slowestLimit) {
+                    slowest.poll();
+                }
+                if (slowest.size() == slowestLimit) {
+                    slowestThreshold = slowest.peek().getNanos();
+                }
+            }
+        }
+    }
+
+    private static double millis(final long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    /**
+     * Management beans are only loaded when metrics are recorded, keeping them out of the startup of plain validations.
+     */
+    private static class Allocation {
+        private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        static long currentThread() {
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+                if (allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled()) {
+                    return allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            }
+            return -1;
+        }
+    }
+}
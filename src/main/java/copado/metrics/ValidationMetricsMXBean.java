@@ -0,0 +1,46 @@
+package copado.metrics;
+
+/**
+ * Validation metrics published through JMX. Times are in milliseconds and add up every file validated
+ * since the metrics were created or reset.
+ */
+public interface ValidationMetricsMXBean {
+
+    long getFiles();
+
+    long getBytesRead();
+
+    long getRegexes();
+
+    long getRules();
+
+    long getExpandedRegexes();
+
+    /**
+     * @return Bytes allocated by the threads validating the files, -1 when the JVM does not report it
+     */
+    long getAllocatedBytes();
+
+    double getTotalMillis();
+
+    double getReadMillis();
+
+    double getParseMillis();
+
+    double getRegexCompileMillis();
+
+    double getRegexAnalysisMillis();
+
+    double getRuleCheckMillis();
+
+    double getExpandedRegexCompileMillis();
+
+    double getExpandedRegexWaitMillis();
+
+    /**
+     * @return The slowest expressions to compile, slowest first, as "millis node: expression"
+     */
+    String[] getSlowestRegexes();
+
+    void reset();
+}
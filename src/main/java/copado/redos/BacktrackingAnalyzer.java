@@ -0,0 +1,240 @@
+package copado.redos;
+
+import copado.yaml.RegexAnalyzer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects regex_lib expressions that may backtrack catastrophically (ReDoS) on large metadata files.
+ * <p>
+ * It works in two steps. First the expression is scanned for unbounded quantifiers nested inside a group
+ * that is itself quantified, like {@code (a+)+}, which can take exponential time. Then the compiled
+ * pattern is run against generated XML of growing size, counting the characters the matcher reads; when
+ * that count grows faster than the input, the expression is reported. Counting steps instead of timing
+ * them gives the same result on every machine. When the time budget runs out, the characters read so far are
+ * a lower bound of the steps of the unfinished input, and the growth is measured including it; an expression
+ * that does not even finish the smallest input, or that overflows the matcher stack, is reported as well.
+ */
+public class BacktrackingAnalyzer implements RegexAnalyzer {
+
+    /**
+     * Sizes of the generated inputs, in characters. Each one doubles the previous.
+     */
+    static final int[] INPUT_SIZES = {4096, 8192, 16384, 32768, 65536};
+    /**
+     * Growth exponent above which matching is considered super-linear. Linear is 1 and quadratic is 2.
+     */
+    static final double MAX_EXPONENT = 1.5;
+
+    private static final String NESTED_QUANTIFIER_PATTERN = "Regular expression has a quantifier nested inside a quantified group at position %d, it may backtrack catastrophically";
+    private static final String TIMEOUT_PATTERN = "Regular expression matching steps grow super-linearly with input size (exponent %.1f), it did not finish matching %d characters of generated XML in %d ms";
+    private static final String UNFINISHED_PATTERN = "Regular expression did not finish matching the smallest input, %d characters of generated XML, in %d ms, it may backtrack catastrophically";
+    private static final String STACK_OVERFLOW_PATTERN = "Regular expression overflows the matcher stack on %d characters of generated XML, it recurses once per repetition of a group";
+    private static final String SUPER_LINEAR_PATTERN = "Regular expression matching steps grow super-linearly with input size (exponent %.1f)";
+
+    private final long budgetMillis;
+
+    /**
+     * @param budgetMillis Maximum time spent fuzzing each expression
+     */
+    public BacktrackingAnalyzer(final long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    @Override
+    public Optional<String> analyze(final String regEx) {
+        OptionalInt nested = findNestedQuantifier(regEx);
+        if (nested.isPresent()) {
+            return Optional.of(String.format(Locale.ROOT, NESTED_QUANTIFIER_PATTERN, nested.getAsInt()));
+        }
+        return fuzz(Pattern.compile(regEx), regEx);
+    }
+
+    @Override
+    public String key() {
+        return getClass().getName() + ":" + budgetMillis;
+    }
+
+    /**
+     * Find an unbounded quantifier applied to a group that already contains one.
+     * Possessive quantifiers and atomic groups do not backtrack and are not taken into account.
+     *
+     * @param regEx Regular expression
+     * @return Position of the outer quantifier, empty when there is none
+     */
+    static OptionalInt findNestedQuantifier(final String regEx) {
+        Deque<boolean[]> groups = new ArrayDeque<>();
+        groups.push(new boolean[]{false});
+        boolean closedGroupHasQuantifier = false;
+        boolean lastAtomIsGroup = false;
+        int i = 0;
+        while (i < regEx.length()) {
+            char c = regEx.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(regEx, i);
+                lastAtomIsGroup = false;
+            } else if (c == '[') {
+                i = skipCharacterClass(regEx, i);
+                lastAtomIsGroup = false;
+            } else if (c == '(') {
+                boolean atomic = regEx.startsWith("(?>", i);
+                // an atomic group never gives back what it matched, quantifiers inside it do not nest
+                groups.push(new boolean[]{false, atomic});
+                i = skipGroupPrefix(regEx, i);
+                lastAtomIsGroup = false;
+            } else if (c == ')') {
+                boolean[] group = groups.size() > 1 ? groups.pop() : new boolean[]{false};
+                closedGroupHasQuantifier = group[0] && !(group.length > 1 && group[1]);
+                if (closedGroupHasQuantifier) {
+                    groups.peek()[0] = true;
+                }
+                lastAtomIsGroup = true;
+                i++;
+            } else if (c == '*' || c == '+' || c == '{') {
+                int end = c == '{' ? regEx.indexOf('}', i) : i;
+                if (end < 0) {
+                    return OptionalInt.empty();
+                }
+                boolean unbounded = c != '{' || regEx.substring(i, end).endsWith(",");
+                boolean possessive = end + 1 < regEx.length() && regEx.charAt(end + 1) == '+';
+                if (unbounded && !possessive) {
+                    if (lastAtomIsGroup && closedGroupHasQuantifier) {
+                        return OptionalInt.of(i);
+                    }
+                    groups.peek()[0] = true;
+                }
+                i = end + 1;
+                if (i < regEx.length() && (regEx.charAt(i) == '?' || regEx.charAt(i) == '+')) {
+                    i++;
+                }
+                lastAtomIsGroup = false;
+            } else {
+                lastAtomIsGroup = false;
+                i++;
+            }
+        }
+        return OptionalInt.empty();
+    }
+
+    private Optional<String> fuzz(final Pattern pattern, final String regEx) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        long[] steps = new long[INPUT_SIZES.length];
+        int measured = 0;
+        int unfinishedLength = 0;
+        try {
+            while (measured < INPUT_SIZES.length) {
+                steps[measured] = steps(pattern, XmlFuzzInput.generate(regEx, INPUT_SIZES[measured]), deadline);
+                measured++;
+            }
+        } catch (DeadlineCharSequence.DeadlineExceeded ex) {
+            unfinishedLength = ex.getLength();
+            if (measured == 0) {
+                return Optional.of(String.format(Locale.ROOT, UNFINISHED_PATTERN, unfinishedLength, budgetMillis));
+            }
+            // the unfinished input took at least the characters read so far
+            steps[measured++] = ex.getReads();
+        } catch (StackOverflowError ex) {
+            // Pattern recurses for each repetition of a group with alternatives, long inputs exhaust the stack
+            return Optional.of(String.format(Locale.ROOT, STACK_OVERFLOW_PATTERN, INPUT_SIZES[measured]));
+        }
+        double exponent = exponent(steps, measured);
+        if (exponent <= MAX_EXPONENT) {
+            return Optional.empty();
+        }
+        return Optional.of(unfinishedLength > 0
+                ? String.format(Locale.ROOT, TIMEOUT_PATTERN, exponent, unfinishedLength, budgetMillis)
+                : String.format(Locale.ROOT, SUPER_LINEAR_PATTERN, exponent));
+    }
+
+    /**
+     * Growth exponent of the matching steps between the smallest input and the biggest one measured.
+     */
+    private static double exponent(final long[] steps, final int measured) {
+        long first = Math.max(steps[0], 1);
+        long last = Math.max(steps[measured - 1], 1);
+        double sizeRatio = (double) INPUT_SIZES[measured - 1] / INPUT_SIZES[0];
+        return Math.log((double) last / first) / Math.log(sizeRatio);
+    }
+
+    /**
+     * @return Characters read to find every match in the input
+     */
+    private static long steps(final Pattern pattern, final String input, final long deadline) {
+        DeadlineCharSequence text = new DeadlineCharSequence(input, deadline);
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            // only the characters read finding every match are counted
+        }
+        return text.getReads();
+    }
+
+    private static int skipEscape(final String regEx, final int start) {
+        if (start + 1 >= regEx.length()) {
+            return regEx.length();
+        }
+        char escaped = regEx.charAt(start + 1);
+        if (escaped == 'Q') {
+            int end = regEx.indexOf("\\E", start + 2);
+            return end < 0 ? regEx.length() : end + 2;
+        }
+        if ((escaped == 'p' || escaped == 'P' || escaped == 'x' || escaped == 'k') && start + 2 < regEx.length()
+                && (regEx.charAt(start + 2) == '{' || regEx.charAt(start + 2) == '<')) {
+            int end = regEx.indexOf(regEx.charAt(start + 2) == '{' ? '}' : '>', start + 2);
+            return end < 0 ? regEx.length() : end + 1;
+        }
+        return start + 2;
+    }
+
+    private static int skipCharacterClass(final String regEx, final int start) {
+        int i = start + 1;
+        if (i < regEx.length() && regEx.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regEx.length() && regEx.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        while (i < regEx.length() && depth > 0) {
+            char c = regEx.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(regEx, i);
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipGroupPrefix(final String regEx, final int start) {
+        int i = start + 1;
+        if (i >= regEx.length() || regEx.charAt(i) != '?') {
+            return i;
+        }
+        i++;
+        if (regEx.startsWith("<=", i) || regEx.startsWith("<!", i)) {
+            return i + 2;
+        }
+        if (i < regEx.length() && regEx.charAt(i) == '<') {
+            int end = regEx.indexOf('>', i);
+            return end < 0 ? regEx.length() : end + 1;
+        }
+        // non capturing, lookahead, atomic groups and inline flags like (?s) or (?i:
+        while (i < regEx.length() && regEx.charAt(i) != ')' && regEx.charAt(i) != ':'
+                && regEx.charAt(i) != '=' && regEx.charAt(i) != '!' && regEx.charAt(i) != '>') {
+            i++;
+        }
+        return i < regEx.length() && regEx.charAt(i) != ')' ? i + 1 : i;
+    }
+}
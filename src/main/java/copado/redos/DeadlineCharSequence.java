@@ -0,0 +1,81 @@
+package copado.redos;
+
+/**
+ * Character sequence that aborts the regex reading it once a deadline has passed, so a pattern that
+ * backtracks catastrophically can not hang the validation. It counts the characters read, a measure of
+ * the work of the matcher that does not depend on the machine.
+ */
+public class DeadlineCharSequence implements CharSequence {
+
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final CharSequence text;
+    private final long deadline;
+    private long reads;
+
+    /**
+     * @param text     Characters read
+     * @param deadline {@link System#nanoTime()} after which reading fails with {@link DeadlineExceeded}
+     */
+    public DeadlineCharSequence(final CharSequence text, final long deadline) {
+        this.text = text;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+            throw new DeadlineExceeded(text.length(), reads);
+        }
+        return text.charAt(index);
+    }
+
+    /**
+     * @return Characters read so far, each backtracking step reads at least one
+     */
+    long getReads() {
+        return reads;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    /**
+     * Thrown when the deadline has passed. It carries no stack trace, it is only used to unwind the matcher.
+     */
+    public static class DeadlineExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int length;
+        private final long reads;
+
+        DeadlineExceeded(final int length, final long reads) {
+            super(null, null, false, false);
+            this.length = length;
+            this.reads = reads;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return Characters read before the deadline, a lower bound of the steps needed to finish
+         */
+        long getReads() {
+            return reads;
+        }
+    }
+}
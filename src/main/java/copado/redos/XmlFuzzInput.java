@@ -0,0 +1,61 @@
+package copado.redos;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates Salesforce-like XML metadata built from the tags a regular expression looks for. The last
+ * tag found in the expression is left out, so the expression walks its partial-match paths without
+ * ever matching a whole element, which is where backtracking costs the most.
+ */
+final class XmlFuzzInput {
+
+    private static final Pattern TAG = Pattern.compile("</?([A-Za-z_][\\w.:-]*)>");
+    private static final String[] DEFAULT_TAGS = {"fields", "fullName", "label", "missing"};
+
+    private XmlFuzzInput() {
+    }
+
+    /**
+     * @param regEx  Regular expression whose literal tags are used to build the document
+     * @param length Minimum length of the document in characters
+     * @return Pretty printed XML document
+     */
+    static String generate(final String regEx, final int length) {
+        List<String> tags = tags(regEx);
+        StringBuilder xml = new StringBuilder(length + 256);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<CustomObject xmlns=\"http://soap.sforce.com/2006/04/metadata\">\n");
+        String outer = tags.get(0);
+        for (int block = 0; xml.length() < length; block++) {
+            xml.append("    <").append(outer).append(">\n");
+            for (int i = 1; i < tags.size() - 1; i++) {
+                String tag = tags.get(i);
+                xml.append("        <").append(tag).append(">Fuzz").append(block).append("_").append(i)
+                        .append("__c</").append(tag).append(">\n");
+            }
+            xml.append("        <description>Generated value number ").append(block).append("</description>\n");
+            xml.append("    </").append(outer).append(">\n");
+        }
+        xml.append("</CustomObject>\n");
+        return xml.toString();
+    }
+
+    private static List<String> tags(final String regEx) {
+        Set<String> tags = new LinkedHashSet<>();
+        Matcher matcher = TAG.matcher(regEx);
+        while (matcher.find()) {
+            tags.add(matcher.group(1));
+        }
+        List<String> result = new ArrayList<>(tags);
+        if (result.isEmpty()) {
+            for (String tag : DEFAULT_TAGS) {
+                result.add(tag);
+            }
+        }
+        return result;
+    }
+}
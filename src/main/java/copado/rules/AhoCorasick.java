@@ -0,0 +1,152 @@
+package copado.rules;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton that finds which of a set of literals occur in a text in a single pass.
+ * Transitions are resolved at build time into a table indexed by state and character class, so each
+ * character of the text costs one lookup. Characters that appear in no literal share a class.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+final class AhoCorasick {
+
+    private static final int ASCII = 128;
+
+    private final int[] asciiClasses = new int[ASCII];
+    private final Map<Character, Integer> otherClasses = new HashMap<>();
+    private final int classCount;
+    private final int[] transitions;
+    /**
+     * Literals ending at each state, following failure links, null when there are none
+     */
+    private final int[][] outputs;
+
+    /**
+     * @param literals Non empty literals, each one is identified by its position
+     */
+    AhoCorasick(final List<String> literals) {
+        int classes = 1;
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (characterClass(c) == 0) {
+                    if (c < ASCII) {
+                        asciiClasses[c] = classes++;
+                    } else {
+                        otherClasses.put(c, classes++);
+                    }
+                }
+            }
+        }
+        this.classCount = classes;
+
+        // trie, -1 for missing transitions
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(newState());
+        ends.add(null);
+        for (int id = 0; id < literals.size(); id++) {
+            int state = 0;
+            String literal = literals.get(id);
+            for (int i = 0; i < literal.length(); i++) {
+                int symbol = characterClass(literal.charAt(i));
+                if (trie.get(state)[symbol] < 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newState());
+                    ends.add(null);
+                }
+                state = trie.get(state)[symbol];
+            }
+            if (ends.get(state) == null) {
+                ends.set(state, new ArrayList<>(1));
+            }
+            ends.get(state).add(id);
+        }
+
+        // breadth first, failure links turn the trie into a complete transition table
+        int states = trie.size();
+        this.transitions = new int[states * classCount];
+        this.outputs = new int[states][];
+        int[] failure = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < classCount; symbol++) {
+            int next = trie.get(0)[symbol];
+            transitions[symbol] = Math.max(next, 0);
+            if (next > 0) {
+                queue.add(next);
+            }
+        }
+        outputs[0] = toArray(ends.get(0), null);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = toArray(ends.get(state), outputs[failure[state]]);
+            for (int symbol = 0; symbol < classCount; symbol++) {
+                int next = trie.get(state)[symbol];
+                int fallback = transitions[failure[state] * classCount + symbol];
+                if (next > 0) {
+                    failure[next] = fallback;
+                    transitions[state * classCount + symbol] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * classCount + symbol] = fallback;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the literals that occur in a text.
+     *
+     * @param text  Text to scan
+     * @param found Where the identifier of each literal found is set
+     */
+    void scan(final CharSequence text, final BitSet found) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * classCount + characterClass(text.charAt(i))];
+            int[] ids = outputs[state];
+            if (ids != null) {
+                for (int id : ids) {
+                    found.set(id);
+                }
+            }
+        }
+    }
+
+    private int characterClass(final char c) {
+        if (c < ASCII) {
+            return asciiClasses[c];
+        }
+        Integer symbol = otherClasses.get(c);
+        return symbol != null ? symbol : 0;
+    }
+
+    private int[] newState() {
+        int[] state = new int[classCount];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] toArray(final List<Integer> ends, final int[] inherited) {
+        if (ends == null) {
+            return inherited;
+        }
+        int inheritedLength = inherited != null ? inherited.length : 0;
+        int[] ids = new int[ends.size() + inheritedLength];
+        for (int i = 0; i < ends.size(); i++) {
+            ids[i] = ends.get(i);
+        }
+        if (inherited != null) {
+            System.arraycopy(inherited, 0, ids, ends.size(), inheritedLength);
+        }
+        return ids;
+    }
+}
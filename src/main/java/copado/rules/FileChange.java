@@ -0,0 +1,60 @@
+package copado.rules;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Replacements made by the rules on a single file.
+ */
+@Value
+@AllArgsConstructor
+public class FileChange {
+    /**
+     * Changed file
+     */
+    Path file;
+    /**
+     * Replacements in the order they were applied
+     */
+    List<Replacement> replacements;
+    /**
+     * Why the file could not be processed, null when it was
+     */
+    String error;
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    /**
+     * Render the replacements as a diff, one hunk per replacement.
+     */
+    public String toDiff() {
+        StringBuilder diff = new StringBuilder();
+        diff.append("--- a/").append(file).append('\n');
+        diff.append("+++ b/").append(file).append('\n');
+        for (Replacement replacement : replacements) {
+            diff.append("@@ line ").append(replacement.getLine())
+                    .append(" rule ").append(replacement.getRule());
+            if (replacement.getReplaceValue() != null) {
+                diff.append(" value ").append(replacement.getReplaceValue());
+            }
+            diff.append(" @@\n");
+            appendLines(diff, '-', replacement.getOriginal());
+            appendLines(diff, '+', replacement.getReplacement());
+        }
+        return diff.toString();
+    }
+
+    private static void appendLines(final StringBuilder diff, final char prefix, final String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        for (String line : text.split("\r?\n", -1)) {
+            diff.append(prefix).append(line).append('\n');
+        }
+    }
+}
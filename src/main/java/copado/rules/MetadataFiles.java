@@ -0,0 +1,92 @@
+package copado.rules;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads and writes metadata files of a Salesforce checkout.
+ */
+public final class MetadataFiles {
+
+    private MetadataFiles() {
+    }
+
+    /**
+     * Collect the files below a directory, skipping hidden directories like .git, sorted by path.
+     *
+     * @param root Root directory of the metadata checkout
+     * @return Regular files found
+     * @throws IOException when the directory can not be read
+     */
+    public static List<Path> find(final Path root) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                boolean hidden = !dir.equals(root) && dir.getFileName().toString().startsWith(".");
+                return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Read a UTF-8 file. It is read into a byte array and closed before decoding: the content is decoded into
+     * the heap anyway, and a memory mapping would keep the file open, blocking its rewrite on Windows, until
+     * the mapping is collected.
+     *
+     * @param file File to read
+     * @return File content
+     * @throws IOException when the file can not be read or is not valid UTF-8
+     */
+    public static CharBuffer read(final Path file) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        return decoder.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Replace the content of a file, writing a temporary file that is moved into place.
+     *
+     * @param file    File to replace
+     * @param content New content, written as UTF-8
+     * @throws IOException when the file can not be written
+     */
+    public static void write(final Path file, final CharSequence content) throws IOException {
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), ".copado-", ".tmp");
+        try {
+            Files.write(temporary, content.toString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package copado.rules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which patterns of a group of rules may match a file with a single scan of its content.
+ * The required literal of each expanded pattern goes into one {@link AhoCorasick} automaton, and a
+ * pattern is only run when its literal was found. Patterns without a required literal always run.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+class PatternPrefilter {
+
+    private static final int ALWAYS = -1;
+
+    private final AhoCorasick automaton;
+    /**
+     * Literal of each pattern of each rule, {@link #ALWAYS} when the pattern has none
+     */
+    private final int[][] literalIds;
+
+    /**
+     * @param rules Rules applied to the same files, in the order they run
+     */
+    PatternPrefilter(final List<ReplacementRule> rules) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> literals = new ArrayList<>();
+        this.literalIds = new int[rules.size()][];
+        for (int r = 0; r < rules.size(); r++) {
+            ReplacementRule rule = rules.get(r);
+            literalIds[r] = new int[rule.getReplaceValues().size()];
+            for (int p = 0; p < literalIds[r].length; p++) {
+                String literal = RequiredLiteral.of(ReplacementRule.expand(rule.getTemplate(), rule.getReplaceValues().get(p)));
+                if (literal == null) {
+                    literalIds[r][p] = ALWAYS;
+                } else {
+                    literalIds[r][p] = ids.computeIfAbsent(literal, key -> {
+                        literals.add(key);
+                        return literals.size() - 1;
+                    });
+                }
+            }
+        }
+        this.automaton = new AhoCorasick(literals);
+    }
+
+    /**
+     * Scan a content once.
+     *
+     * @param content File content
+     * @return Literals found, to be given to {@link #mayMatch}
+     */
+    BitSet scan(final CharSequence content) {
+        BitSet found = new BitSet();
+        automaton.scan(content, found);
+        return found;
+    }
+
+    /**
+     * Whether a pattern may match the scanned content.
+     *
+     * @param rule    Position of the rule in the group
+     * @param pattern Position of the pattern in the rule
+     * @param found   Result of {@link #scan} of the content
+     * @return false when the pattern can not match
+     */
+    boolean mayMatch(final int rule, final int pattern, final BitSet found) {
+        int id = literalIds[rule][pattern];
+        return id == ALWAYS || found.get(id);
+    }
+}
@@ -0,0 +1,32 @@
+package copado.rules;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * A single text replacement made by a rule on a file.
+ */
+@Value
+@AllArgsConstructor
+public class Replacement {
+    /**
+     * Rule that matched
+     */
+    String rule;
+    /**
+     * Replace value used to expand the rule regex, null when the rule has none
+     */
+    String replaceValue;
+    /**
+     * Line where the match starts, counted on the content the rule was applied to
+     */
+    int line;
+    /**
+     * Text matched by the regex
+     */
+    String original;
+    /**
+     * Text written in its place
+     */
+    String replacement;
+}
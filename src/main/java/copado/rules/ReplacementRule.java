@@ -0,0 +1,187 @@
+package copado.rules;
+
+import copado.yaml.CompactYaml;
+import copado.yaml.CopadoYaml;
+import copado.yaml.CopadoYamlRule;
+import copado.yaml.ExpandedRegexValidator;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * A Copado rule ready to be applied: its regex_lib template is expanded with every replace value and compiled
+ * the first time the patterns are needed, so selecting rules does not pay for compiling them.
+ */
+@Value
+@AllArgsConstructor
+@EqualsAndHashCode(exclude = "patterns")
+@ToString(exclude = "patterns")
+public class ReplacementRule {
+
+    /**
+     * Text of the regex_lib templates replaced by each replace value
+     */
+    public static final String REPLACE_VALUE = ExpandedRegexValidator.REPLACE_VALUE;
+
+    private static final List<String> NO_VALUES = Collections.singletonList(null);
+
+    /**
+     * Rule name
+     */
+    String name;
+    /**
+     * Values used to expand the template, a single null value when the rule has no replace_values
+     */
+    List<String> replaceValues;
+    /**
+     * regex_lib expression of the rule
+     */
+    String template;
+    /**
+     * Compiled pattern of each replace value, in the same order, null until they are first needed
+     */
+    @Getter(AccessLevel.NONE)
+    AtomicReference<List<Pattern>> patterns = new AtomicReference<>();
+    /**
+     * Text that replaces every match, empty to remove it
+     */
+    String replaceWith;
+    /**
+     * Exact file names selected by the rule, empty when it selects by extension
+     */
+    Set<String> fileNames;
+    /**
+     * File extensions selected by the rule, empty when it selects by file name
+     */
+    Set<String> extensions;
+    /**
+     * Branches where the rule applies, empty for all branches
+     */
+    Set<String> branches;
+    /**
+     * Branches where the rule does not apply
+     */
+    Set<String> exclusionBranches;
+
+    /**
+     * Build the rules of a valid YAML, in the order they are defined.
+     *
+     * @param yaml YAML already validated
+     * @return Rules, their patterns are compiled when first used
+     */
+    public static List<ReplacementRule> of(final CopadoYaml yaml) {
+        List<ReplacementRule> rules = new ArrayList<>(yaml.getRules().size());
+        for (Map.Entry<String, CopadoYamlRule> entry : yaml.getRules().entrySet()) {
+            rules.add(of(entry.getKey(), entry.getValue(), yaml.getRegex_lib().get(entry.getValue().getRegex_name())));
+        }
+        return rules;
+    }
+
+    /**
+     * Build the rules of a valid YAML from its compact model, in the order they are defined. Rules share
+     * the lists and sets of the model instead of holding their own copies.
+     *
+     * @param yaml YAML already validated
+     * @return Rules, their patterns are compiled when first used
+     */
+    public static List<ReplacementRule> of(final CompactYaml yaml) {
+        List<ReplacementRule> rules = new ArrayList<>(yaml.getRuleCount());
+        for (int rule = 0; rule < yaml.getRuleCount(); rule++) {
+            String replaceWith = yaml.getReplaceWith(rule);
+            rules.add(new ReplacementRule(yaml.getRuleName(rule), values(yaml.getReplaceValues(rule)), yaml.getTemplate(rule),
+                    replaceWith != null ? replaceWith : "",
+                    orEmpty(yaml.getFileNames(rule)), orEmpty(yaml.getExtensions(rule)),
+                    orEmpty(yaml.getBranches(rule)), orEmpty(yaml.getExclusionBranches(rule))));
+        }
+        return rules;
+    }
+
+    static ReplacementRule of(final String name, final CopadoYamlRule rule, final String template) {
+        List<String> values = values(rule.getReplace_values());
+        return new ReplacementRule(name, values, template,
+                rule.getReplace_with() != null ? rule.getReplace_with() : "",
+                toSet(rule.getFile_names()), toSet(rule.getExtensions()),
+                toSet(rule.getBranches()), toSet(rule.getExclusion_branches()));
+    }
+
+    /**
+     * Substitute the replace value into a regex_lib template.
+     *
+     * @param template regex_lib expression
+     * @param value    Replace value, null to leave the template as it is
+     * @return Regular expression to apply
+     */
+    public static String expand(final String template, final String value) {
+        return ExpandedRegexValidator.expand(template, value);
+    }
+
+    /**
+     * Whether the rule selects a file.
+     *
+     * @param fileName Name of the file, without directories
+     */
+    public boolean appliesToFile(final String fileName) {
+        if (!fileNames.isEmpty()) {
+            return fileNames.contains(fileName);
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && extensions.contains(fileName.substring(dot + 1));
+    }
+
+    /**
+     * Whether the rule applies on a branch.
+     *
+     * @param branch Branch name, null when it is unknown and branch settings are ignored
+     */
+    public boolean appliesToBranch(final String branch) {
+        if (branch == null) {
+            return true;
+        }
+        return (branches.isEmpty() || branches.contains(branch)) && !exclusionBranches.contains(branch);
+    }
+
+    /**
+     * Compiled pattern of each replace value, in the same order. They are compiled on the first call; threads
+     * racing on it may compile them twice, but all of them get the same list.
+     */
+    public List<Pattern> getPatterns() {
+        List<Pattern> compiled = patterns.get();
+        if (compiled == null) {
+            patterns.compareAndSet(null, compilePatterns());
+            compiled = patterns.get();
+        }
+        return compiled;
+    }
+
+    private List<Pattern> compilePatterns() {
+        List<Pattern> patterns = new ArrayList<>(replaceValues.size());
+        for (String value : replaceValues) {
+            patterns.add(Pattern.compile(expand(template, value)));
+        }
+        return Collections.unmodifiableList(patterns);
+    }
+
+    private static List<String> values(final List<String> replaceValues) {
+        return replaceValues == null || replaceValues.isEmpty() ? NO_VALUES : replaceValues;
+    }
+
+    private static Set<String> orEmpty(final Set<String> values) {
+        return values != null ? values : Collections.emptySet();
+    }
+
+    private static Set<String> toSet(final List<String> values) {
+        return values == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(values));
+    }
+}
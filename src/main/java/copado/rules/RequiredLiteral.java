@@ -0,0 +1,276 @@
+package copado.rules;
+
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds text that every match of a regular expression must contain, such as
+ * {@code <fullName>Foo__c</fullName>}, so a file without it can be skipped without running the expression.
+ * <p>
+ * Only literals that are required on every path are taken: text inside alternations, optional
+ * quantifiers and lookarounds is ignored, and expressions with case insensitive, comments or canonical
+ * equivalence flags give no literal at all.
+ */
+final class RequiredLiteral {
+
+    /**
+     * Shorter literals are too frequent to be worth looking for
+     */
+    static final int MIN_LENGTH = 3;
+
+    /**
+     * Minimum repetitions of an atom without quantifier
+     */
+    private static final int EXACTLY_ONE = -1;
+
+    private static final Atom OTHER = new Atom(null, null);
+
+    private final String regex;
+    private int pos;
+    private boolean unsafe;
+
+    private RequiredLiteral(final String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * @param regex Regular expression, it must compile
+     * @return Longest text every match contains, null when there is none long enough
+     */
+    static String of(final String regex) {
+        RequiredLiteral parser = new RequiredLiteral(regex);
+        List<String> literals;
+        try {
+            literals = parser.parseSequence();
+        } catch (RuntimeException ex) {
+            // syntax this parser does not follow, the expression is always run
+            return null;
+        }
+        if (parser.unsafe || parser.pos != regex.length()) {
+            return null;
+        }
+        String longest = null;
+        for (String literal : literals) {
+            if (literal.length() >= MIN_LENGTH && (longest == null || literal.length() > longest.length())) {
+                longest = literal;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Parse until the end of the enclosing group.
+     *
+     * @return Literals required by the sequence, empty when it has alternatives
+     */
+    private List<String> parseSequence() {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        boolean alternatives = false;
+        while (pos < regex.length() && regex.charAt(pos) != ')') {
+            if (regex.charAt(pos) == '|') {
+                alternatives = true;
+                pos++;
+                flush(run, literals);
+                continue;
+            }
+            Atom atom = parseAtom();
+            int min = parseQuantifier();
+            if (atom.text != null) {
+                if (min == EXACTLY_ONE) {
+                    run.append(atom.text);
+                } else {
+                    // the last character repeats or may be missing, what follows is not contiguous
+                    run.append(atom.text, 0, min == 0 ? atom.text.length() - 1 : atom.text.length());
+                    flush(run, literals);
+                }
+            } else {
+                flush(run, literals);
+                if (atom.group != null && min != 0) {
+                    literals.addAll(atom.group);
+                }
+            }
+        }
+        flush(run, literals);
+        return alternatives ? Collections.emptyList() : literals;
+    }
+
+    /**
+     * @return Minimum repetitions, {@link #EXACTLY_ONE} when there is no quantifier
+     */
+    private int parseQuantifier() {
+        if (pos >= regex.length()) {
+            return EXACTLY_ONE;
+        }
+        int min;
+        char c = regex.charAt(pos);
+        if (c == '?' || c == '*') {
+            min = 0;
+            pos++;
+        } else if (c == '+') {
+            min = 1;
+            pos++;
+        } else if (c == '{' && pos + 1 < regex.length() && Character.isDigit(regex.charAt(pos + 1))) {
+            int close = regex.indexOf('}', pos);
+            String[] bounds = regex.substring(pos + 1, close).split(",", -1);
+            min = Integer.parseInt(bounds[0]);
+            boolean exact = bounds.length == 1 || bounds[1].equals(bounds[0]);
+            pos = close + 1;
+            if (exact && min == 1) {
+                min = EXACTLY_ONE;
+            }
+        } else {
+            return EXACTLY_ONE;
+        }
+        if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+            pos++;
+        }
+        return min;
+    }
+
+    private Atom parseAtom() {
+        char c = regex.charAt(pos++);
+        switch (c) {
+            case '(':
+                return parseGroup();
+            case '[':
+                skipClass();
+                return OTHER;
+            case '\\':
+                return parseEscape();
+            case '.':
+            case '^':
+            case '$':
+                return OTHER;
+            default:
+                return new Atom(String.valueOf(c), null);
+        }
+    }
+
+    private Atom parseGroup() {
+        boolean required = true;
+        if (regex.charAt(pos) == '?') {
+            pos++;
+            char kind = regex.charAt(pos);
+            if (kind == ':' || kind == '>') {
+                pos++;
+            } else if (kind == '=' || kind == '!') {
+                pos++;
+                required = false;
+            } else if (kind == '<') {
+                pos++;
+                if (regex.charAt(pos) == '=' || regex.charAt(pos) == '!') {
+                    pos++;
+                    required = false;
+                } else {
+                    pos = regex.indexOf('>', pos) + 1;
+                }
+            } else {
+                // inline flags, either (?flags) or (?flags:group)
+                while (regex.charAt(pos) != ')' && regex.charAt(pos) != ':') {
+                    char flag = regex.charAt(pos++);
+                    unsafe |= flag == 'i' || flag == 'x' || flag == 'c';
+                }
+                if (regex.charAt(pos++) == ')') {
+                    return OTHER;
+                }
+            }
+        }
+        List<String> literals = parseSequence();
+        if (regex.charAt(pos++) != ')') {
+            throw new IllegalStateException("Group not closed");
+        }
+        return required ? new Atom(null, literals) : OTHER;
+    }
+
+    private Atom parseEscape() {
+        char c = regex.charAt(pos++);
+        switch (c) {
+            case 'Q': {
+                int end = regex.indexOf("\\E", pos);
+                String quoted = regex.substring(pos, end < 0 ? regex.length() : end);
+                pos = end < 0 ? regex.length() : end + 2;
+                return quoted.isEmpty() ? OTHER : new Atom(quoted, null);
+            }
+            case 't':
+                return new Atom("\t", null);
+            case 'n':
+                return new Atom("\n", null);
+            case 'r':
+                return new Atom("\r", null);
+            case 'f':
+                return new Atom("\f", null);
+            case 'u': {
+                char unicode = (char) Integer.parseInt(regex.substring(pos, pos + 4), 16);
+                pos += 4;
+                return new Atom(String.valueOf(unicode), null);
+            }
+            case 'x':
+            case 'p':
+            case 'P':
+            case 'k':
+                // \x{...}, \p{...} and \k<...> carry an argument, the character they stand for is not taken
+                if (pos < regex.length() && (regex.charAt(pos) == '{' || regex.charAt(pos) == '<')) {
+                    pos = regex.indexOf(regex.charAt(pos) == '{' ? '}' : '>', pos) + 1;
+                } else {
+                    pos += c == 'x' ? 2 : 1;
+                }
+                return OTHER;
+            case 'c':
+                pos++;
+                return OTHER;
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    // character classes, anchors, back references and octal escapes
+                    while (Character.isDigit(c) && pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                        pos++;
+                    }
+                    return OTHER;
+                }
+                return new Atom(String.valueOf(c), null);
+        }
+    }
+
+    private void skipClass() {
+        int depth = 1;
+        if (regex.charAt(pos) == '^') {
+            pos++;
+        }
+        if (regex.charAt(pos) == ']') {
+            pos++;
+        }
+        while (depth > 0) {
+            char c = regex.charAt(pos++);
+            if (c == '\\') {
+                if (regex.charAt(pos) == 'Q') {
+                    pos = regex.indexOf("\\E", pos) + 2;
+                } else {
+                    pos++;
+                }
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+        }
+    }
+
+    private static void flush(final StringBuilder run, final List<String> literals) {
+        if (run.length() > 0) {
+            literals.add(run.toString());
+            run.setLength(0);
+        }
+    }
+
+    /**
+     * A piece of the expression: literal text, a group with the literals it requires, or anything else.
+     */
+    @AllArgsConstructor
+    private static class Atom {
+        private final String text;
+        private final List<String> group;
+    }
+}
@@ -0,0 +1,168 @@
+package copado.rules;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies Copado find and replace rules to the files of a metadata checkout, the same way Copado
+ * does when committing. Files are processed in parallel on a bounded worker pool; on each file the
+ * rules run in the order they are defined and every replace value in the order it is listed, each one
+ * over the result of the previous.
+ * <p>
+ * Instead of running every pattern over the whole file, the file is first scanned once for the literal
+ * each pattern requires (see {@link PatternPrefilter}), and only the patterns whose literal was found
+ * are run. After a replacement the content is scanned again, as the replacement may add a literal.
+ */
+public class RuleEngine {
+
+    private final RuleIndex index;
+    private final int threads;
+    private final boolean prefilter;
+
+    /**
+     * @param rules   Rules to apply
+     * @param threads Worker threads used to process files
+     */
+    public RuleEngine(final List<ReplacementRule> rules, final int threads) {
+        this(rules, threads, true);
+    }
+
+    /**
+     * @param rules     Rules to apply
+     * @param threads   Worker threads used to process files
+     * @param prefilter false to run every pattern over every file, to compare with the prefilter
+     */
+    public RuleEngine(final List<ReplacementRule> rules, final int threads, final boolean prefilter) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be greater than zero");
+        }
+        this.index = new RuleIndex(rules);
+        this.threads = threads;
+        this.prefilter = prefilter;
+    }
+
+    /**
+     * Apply the rules to the files.
+     *
+     * @param files  Files of the checkout
+     * @param branch Branch the files are committed to, null to ignore branch settings
+     * @param write  true to rewrite changed files in place, false for a dry run
+     * @return Files changed or that could not be processed, in the order of the input list
+     */
+    public List<FileChange> apply(final List<Path> files, final String branch, final boolean write) {
+        if (files.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // one prefilter per group of files sharing rules, built by the first file of the group
+        Map<String, PatternPrefilter> prefilters = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try {
+            List<Future<FileChange>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                futures.add(executor.submit(() -> apply(file, branch, write, prefilters)));
+            }
+            List<FileChange> changes = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                FileChange change = await(files.get(i), futures.get(i));
+                if (change != null) {
+                    changes.add(change);
+                }
+            }
+            return changes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private FileChange apply(final Path file, final String branch, final boolean write,
+                             final Map<String, PatternPrefilter> prefilters) {
+        String fileName = file.getFileName().toString();
+        List<ReplacementRule> fileRules = index.rulesFor(fileName, branch);
+        if (fileRules.isEmpty()) {
+            return null;
+        }
+        PatternPrefilter filter = prefilter
+                ? prefilters.computeIfAbsent(index.groupKey(fileName), key -> new PatternPrefilter(fileRules))
+                : null;
+        try {
+            CharSequence content = MetadataFiles.read(file);
+            BitSet found = filter != null ? filter.scan(content) : null;
+            List<Replacement> replacements = new ArrayList<>();
+            for (int r = 0; r < fileRules.size(); r++) {
+                ReplacementRule rule = fileRules.get(r);
+                for (int i = 0; i < rule.getReplaceValues().size(); i++) {
+                    if (found != null && !filter.mayMatch(r, i, found)) {
+                        continue;
+                    }
+                    CharSequence replaced = replace(content, rule, rule.getReplaceValues().get(i), rule.getPatterns().get(i), replacements);
+                    if (replaced != content && filter != null) {
+                        found = filter.scan(replaced);
+                    }
+                    content = replaced;
+                }
+            }
+            if (replacements.isEmpty()) {
+                return null;
+            }
+            if (write) {
+                MetadataFiles.write(file, content);
+            }
+            return new FileChange(file, replacements, null);
+        } catch (IOException ex) {
+            return new FileChange(file, Collections.emptyList(), "Unable to process file: " + ex.getMessage());
+        }
+    }
+
+    private static CharSequence replace(final CharSequence content, final ReplacementRule rule, final String replaceValue,
+                                        final Pattern pattern, final List<Replacement> replacements) {
+        Matcher matcher = pattern.matcher(content);
+        if (!matcher.find()) {
+            return content;
+        }
+        String replaceWith = Matcher.quoteReplacement(rule.getReplaceWith());
+        StringBuffer result = new StringBuffer(content.length());
+        int line = 1;
+        int lineCountedTo = 0;
+        do {
+            line += countLines(content, lineCountedTo, matcher.start());
+            lineCountedTo = matcher.start();
+            replacements.add(new Replacement(rule.getName(), replaceValue, line, matcher.group(), rule.getReplaceWith()));
+            matcher.appendReplacement(result, replaceWith);
+        } while (matcher.find());
+        matcher.appendTail(result);
+        return result;
+    }
+
+    private static int countLines(final CharSequence content, final int from, final int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            if (content.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static FileChange await(final Path file, final Future<FileChange> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new FileChange(file, Collections.emptyList(), "Processing was interrupted");
+        } catch (ExecutionException ex) {
+            return new FileChange(file, Collections.emptyList(), "Unexpected error processing file: " + ex.getCause());
+        }
+    }
+}
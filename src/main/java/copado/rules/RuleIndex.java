@@ -0,0 +1,104 @@
+package copado.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the rules that apply to a file on a branch without scanning every rule. Rules are indexed by
+ * exact file name and by extension; the branch and exclusion branch sets of each candidate are then
+ * checked with a hash lookup, so the cost depends on the rules selected and not on the size of the YAML.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public class RuleIndex {
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final List<ReplacementRule> rules;
+    /**
+     * Positions of the rules selecting each file name, in definition order
+     */
+    private final Map<String, int[]> byFileName;
+    /**
+     * Positions of the rules selecting each extension, in definition order
+     */
+    private final Map<String, int[]> byExtension;
+
+    /**
+     * @param rules Rules in the order they are defined
+     */
+    public RuleIndex(final List<ReplacementRule> rules) {
+        this.rules = rules;
+        Map<String, List<Integer>> fileNames = new HashMap<>();
+        Map<String, List<Integer>> extensions = new HashMap<>();
+        for (int position = 0; position < rules.size(); position++) {
+            ReplacementRule rule = rules.get(position);
+            // Same precedence as ReplacementRule.appliesToFile: file names, when given, win over extensions
+            if (!rule.getFileNames().isEmpty()) {
+                add(fileNames, rule.getFileNames(), position);
+            } else {
+                add(extensions, rule.getExtensions(), position);
+            }
+        }
+        this.byFileName = toArrays(fileNames);
+        this.byExtension = toArrays(extensions);
+    }
+
+    /**
+     * Rules that apply to a file on a branch.
+     *
+     * @param fileName Name of the file, without directories
+     * @param branch   Branch name, null to ignore branch settings
+     * @return Rules in the order they are defined
+     */
+    public List<ReplacementRule> rulesFor(final String fileName, final String branch) {
+        int[] byName = byFileName.getOrDefault(fileName, NO_RULES);
+        int dot = fileName.lastIndexOf('.');
+        int[] byExt = dot >= 0 ? byExtension.getOrDefault(fileName.substring(dot + 1), NO_RULES) : NO_RULES;
+        if (byName.length == 0 && byExt.length == 0) {
+            return Collections.emptyList();
+        }
+        List<ReplacementRule> selected = new ArrayList<>(byName.length + byExt.length);
+        int i = 0;
+        int j = 0;
+        while (i < byName.length || j < byExt.length) {
+            int position = j >= byExt.length || (i < byName.length && byName[i] < byExt[j]) ? byName[i++] : byExt[j++];
+            ReplacementRule rule = rules.get(position);
+            if (rule.appliesToBranch(branch)) {
+                selected.add(rule);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Files with the same key get the same rules on any branch: the file name when some rule selects it
+     * by name, otherwise its extension.
+     *
+     * @param fileName Name of the file, without directories
+     * @return Key of the group of files sharing rules
+     */
+    public String groupKey(final String fileName) {
+        if (byFileName.containsKey(fileName)) {
+            return fileName;
+        }
+        int dot = fileName.lastIndexOf('.');
+        // '*' is not valid in metadata file names, so extension keys never clash with file name keys
+        return dot >= 0 ? "*" + fileName.substring(dot) : "*";
+    }
+
+    private static void add(final Map<String, List<Integer>> index, final Iterable<String> keys, final int position) {
+        for (String key : keys) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(position);
+        }
+    }
+
+    private static Map<String, int[]> toArrays(final Map<String, List<Integer>> index) {
+        Map<String, int[]> arrays = new HashMap<>((int) (index.size() / 0.75f) + 1);
+        index.forEach((key, positions) -> arrays.put(key, positions.stream().mapToInt(Integer::intValue).toArray()));
+        return arrays;
+    }
+}
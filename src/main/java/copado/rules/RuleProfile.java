@@ -0,0 +1,76 @@
+package copado.rules;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * How fast a rule ran over the sample files it selects.
+ */
+@Value
+@AllArgsConstructor
+public class RuleProfile {
+    /**
+     * Rule name
+     */
+    String rule;
+    /**
+     * Sample files selected by the rule
+     */
+    int files;
+    /**
+     * Characters of the selected files
+     */
+    long characters;
+    /**
+     * Matches of all the patterns of the rule in one run over the selected files
+     */
+    long matches;
+    /**
+     * Measured runs over each file
+     */
+    int runs;
+    /**
+     * Nanoseconds spent in the measured runs
+     */
+    long nanos;
+    /**
+     * Nanoseconds of the slowest measured run over a single file
+     */
+    long worstNanos;
+    /**
+     * File of the slowest measured run, null when the rule selects no file
+     */
+    Path worstFile;
+    /**
+     * Why a run over the worst file did not finish, null when every run did. The rule is not run over the files
+     * after it.
+     */
+    Failure failure;
+
+    /**
+     * Millions of characters the rule runs over per second, all its patterns included. NaN when it selects no file,
+     * 0 when a run failed.
+     */
+    public double getThroughput() {
+        if (files == 0) {
+            return Double.NaN;
+        }
+        if (failure != null) {
+            return 0;
+        }
+        return characters * (double) runs / Math.max(nanos, 1) * 1000;
+    }
+
+    public enum Failure {
+        /**
+         * A run took longer than the timeout
+         */
+        TIMEOUT,
+        /**
+         * A pattern recursed deeper than the thread stack, as groups with alternatives repeated over long text do
+         */
+        STACK_OVERFLOW
+    }
+}
@@ -0,0 +1,172 @@
+package copado.rules;
+
+import copado.redos.DeadlineCharSequence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how fast each rule runs over a corpus of sample metadata files. Every rule runs over each file it
+ * selects, the same way the rule engine finds its matches: each expanded pattern in turn over the whole file,
+ * without the prefilter so the cost of the pattern itself is measured. A few warmup runs let the JIT compile
+ * the matcher before the measured runs are timed. A run over a file that takes longer than the timeout is
+ * stopped, since a rule that backtracks catastrophically could otherwise never finish, and the rule is reported
+ * as timed out without running over the remaining files. A pattern that overflows the stack is reported the same way.
+ * <p>
+ * Files are profiled one at a time on the calling thread, so rules do not compete for the same cores while
+ * they are timed.
+ */
+public class RuleProfiler {
+
+    private final RuleIndex index;
+    private final List<ReplacementRule> rules;
+    private final int warmupRuns;
+    private final int measuredRuns;
+    private final long timeoutNanos;
+
+    /**
+     * @param rules        Rules in the order they are defined
+     * @param warmupRuns   Runs over each file before timing it
+     * @param measuredRuns Timed runs over each file
+     */
+    public RuleProfiler(final List<ReplacementRule> rules, final int warmupRuns, final int measuredRuns) {
+        this(rules, warmupRuns, measuredRuns, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param rules         Rules in the order they are defined
+     * @param warmupRuns    Runs over each file before timing it
+     * @param measuredRuns  Timed runs over each file
+     * @param timeoutMillis Maximum time of a single run over a file
+     */
+    public RuleProfiler(final List<ReplacementRule> rules, final int warmupRuns, final int measuredRuns, final long timeoutMillis) {
+        if (warmupRuns < 0) {
+            throw new IllegalArgumentException("Number of warmup runs must not be negative");
+        }
+        if (measuredRuns < 1) {
+            throw new IllegalArgumentException("Number of measured runs must be greater than zero");
+        }
+        this.index = new RuleIndex(rules);
+        this.rules = rules;
+        this.warmupRuns = warmupRuns;
+        this.measuredRuns = measuredRuns;
+        this.timeoutNanos = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Run every rule over the sample files it selects.
+     *
+     * @param files  Sample metadata files
+     * @param branch Branch used to select the rules, null to ignore branch settings
+     * @return Profile of every rule in the order they are defined, including the ones selecting no file
+     * @throws IOException when a selected file can not be read or is not valid UTF-8
+     */
+    public List<RuleProfile> profile(final List<Path> files, final String branch) throws IOException {
+        Map<ReplacementRule, Totals> totals = new IdentityHashMap<>();
+        for (Path file : files) {
+            List<ReplacementRule> fileRules = index.rulesFor(file.getFileName().toString(), branch);
+            if (fileRules.isEmpty()) {
+                continue;
+            }
+            CharSequence content;
+            try {
+                content = MetadataFiles.read(file);
+            } catch (IOException ex) {
+                throw new IOException("Unable to read " + file + ": " + ex.getMessage(), ex);
+            }
+            for (ReplacementRule rule : fileRules) {
+                Totals total = totals.computeIfAbsent(rule, key -> new Totals());
+                if (total.failure == null) {
+                    profile(rule, file, content, total);
+                }
+            }
+        }
+        List<RuleProfile> profiles = new ArrayList<>(rules.size());
+        for (ReplacementRule rule : rules) {
+            Totals total = totals.getOrDefault(rule, new Totals());
+            profiles.add(new RuleProfile(rule.getName(), total.files, total.characters, total.matches, measuredRuns,
+                    total.nanos, total.worstNanos, total.worstFile, total.failure));
+        }
+        return profiles;
+    }
+
+    /**
+     * Run the rule over a file and add the matches and nanoseconds of the measured runs to its totals, or the
+     * reason a run did not finish.
+     */
+    private void profile(final ReplacementRule rule, final Path file, final CharSequence content, final Totals total) {
+        List<Pattern> patterns = rule.getPatterns();
+        long[] result = new long[measuredRuns + 1];
+        try {
+            for (int run = 0; run < warmupRuns; run++) {
+                result[0] = countMatches(patterns, content, deadline(System.nanoTime()));
+            }
+            for (int run = 1; run <= measuredRuns; run++) {
+                long start = System.nanoTime();
+                result[0] = countMatches(patterns, content, deadline(start));
+                result[run] = System.nanoTime() - start;
+            }
+        } catch (DeadlineCharSequence.DeadlineExceeded ex) {
+            total.fail(file, content, RuleProfile.Failure.TIMEOUT);
+            return;
+        } catch (StackOverflowError ex) {
+            // the stack unwound with the error, the profile of the next rules is not affected
+            total.fail(file, content, RuleProfile.Failure.STACK_OVERFLOW);
+            return;
+        }
+        total.add(file, content, result);
+    }
+
+    private long deadline(final long start) {
+        // no overflow when there is no timeout
+        return timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + timeoutNanos;
+    }
+
+    private static long countMatches(final List<Pattern> patterns, final CharSequence content, final long deadline) {
+        long matches = 0;
+        for (Pattern pattern : patterns) {
+            Matcher matcher = pattern.matcher(new DeadlineCharSequence(content, deadline));
+            while (matcher.find()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static class Totals {
+        private int files;
+        private long characters;
+        private long matches;
+        private long nanos;
+        private long worstNanos;
+        private Path worstFile;
+        private RuleProfile.Failure failure;
+
+        void fail(final Path file, final CharSequence content, final RuleProfile.Failure reason) {
+            files++;
+            characters += content.length();
+            failure = reason;
+            worstFile = file;
+        }
+
+        void add(final Path file, final CharSequence content, final long[] profile) {
+            files++;
+            characters += content.length();
+            matches += profile[0];
+            for (int run = 1; run < profile.length; run++) {
+                nanos += profile[run];
+                if (profile[run] > worstNanos || worstFile == null) {
+                    worstNanos = profile[run];
+                    worstFile = file;
+                }
+            }
+        }
+    }
+}
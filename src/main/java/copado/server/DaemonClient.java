@@ -0,0 +1,113 @@
+package copado.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Thin client of the validation daemon. It forwards the command line to a running daemon and prints its
+ * output as if the command had run in this JVM.
+ */
+public class DaemonClient {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 200;
+
+    private final int port;
+    private final Path tokenFile;
+
+    public DaemonClient(final int port) {
+        this(port, DaemonToken.file(port));
+    }
+
+    /**
+     * @param tokenFile File the daemon wrote its token to
+     */
+    DaemonClient(final int port, final Path tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * Run the command line on the daemon.
+     *
+     * @param args             Command line arguments
+     * @param workingDirectory Directory relative paths are resolved against
+     * @param stdin            Read and forwarded when the command reads from stdin
+     * @param stdOut           Where the daemon stdout lines are printed
+     * @param stdErr           Where the daemon stderr lines are printed
+     * @return Exit code of the command, empty when no daemon is listening, or its token can not be read, and the
+     * command must run in process
+     */
+    public OptionalInt run(final String[] args, final String workingDirectory, final InputStream stdin,
+                           final PrintStream stdOut, final PrintStream stdErr) {
+        Optional<String> token = DaemonToken.read(tokenFile);
+        if (!token.isPresent()) {
+            return OptionalInt.empty();
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+            List<String> arguments = Arrays.asList(args);
+            String input = readsStdin(arguments) ? read(stdin) : null;
+            DaemonRequest request = new DaemonRequest(DaemonProtocol.VERSION, token.get(), workingDirectory, arguments, input);
+            OutputStream output = socket.getOutputStream();
+            output.write(DaemonProtocol.jsonMapper.writeValueAsBytes(request));
+            output.write('\n');
+            output.flush();
+            return readResponse(socket, stdOut, stdErr);
+        } catch (ConnectException | SocketTimeoutException ex) {
+            return OptionalInt.empty();
+        } catch (IOException ex) {
+            stdErr.println("Lost connection with validation daemon: " + ex.getMessage());
+            return OptionalInt.of(1);
+        }
+    }
+
+    private static OptionalInt readResponse(final Socket socket, final PrintStream stdOut, final PrintStream stdErr) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(DaemonProtocol.STDOUT)) {
+                stdOut.println(line.substring(DaemonProtocol.STDOUT.length()));
+            } else if (line.startsWith(DaemonProtocol.STDERR)) {
+                stdErr.println(line.substring(DaemonProtocol.STDERR.length()));
+            } else if (line.startsWith(DaemonProtocol.REFUSED)) {
+                return OptionalInt.empty();
+            } else if (line.startsWith(DaemonProtocol.EXIT)) {
+                return OptionalInt.of(Integer.parseInt(line.substring(DaemonProtocol.EXIT.length())));
+            }
+        }
+        throw new IOException("daemon closed the connection before the end of the command");
+    }
+
+    /**
+     * Whether the command reads stdin: a YAML given as {@code -} or {@code --stdin}, or the changed paths of {@code plan}.
+     */
+    private static boolean readsStdin(final List<String> arguments) {
+        return arguments.contains("-") || arguments.contains("--stdin") || !arguments.isEmpty() && "plan".equals(arguments.get(0));
+    }
+
+    private static String read(final InputStream stdin) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stdin.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
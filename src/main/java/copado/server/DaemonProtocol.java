@@ -0,0 +1,27 @@
+package copado.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Line protocol between the validation daemon and its clients, over a loopback TCP connection.
+ * <p>
+ * The client sends one {@link DaemonRequest} as a JSON line, with the token of {@link DaemonToken}. The daemon answers with the output of the
+ * command, one line per output line prefixed with {@link #STDOUT} or {@link #STDERR}, and a last line
+ * with {@link #EXIT} followed by the exit code. A daemon that can not run the request answers a single
+ * line with {@link #REFUSED} and the reason, and the client runs the command itself.
+ */
+final class DaemonProtocol {
+
+    static final int VERSION = 2;
+    static final int DEFAULT_PORT = 47213;
+
+    static final String STDOUT = "O ";
+    static final String STDERR = "E ";
+    static final String EXIT = "X ";
+    static final String REFUSED = "R ";
+
+    static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private DaemonProtocol() {
+    }
+}
@@ -0,0 +1,36 @@
+package copado.server;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Command line execution sent by a client to the validation daemon, as a single JSON line.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DaemonRequest {
+    /**
+     * Protocol version, the daemon refuses requests of other versions
+     */
+    private int version;
+    /**
+     * Token written by the daemon to the file of its port, the daemon refuses requests without it
+     */
+    private String token;
+    /**
+     * Working directory of the client, relative paths are resolved against it
+     */
+    private String workingDirectory;
+    /**
+     * Command line arguments
+     */
+    private List<String> args;
+    /**
+     * Content of the client stdin when it is read by the command, null otherwise
+     */
+    private String stdin;
+}
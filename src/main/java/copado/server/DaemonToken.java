@@ -0,0 +1,100 @@
+package copado.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Optional;
+
+/**
+ * Secret a client must present to the validation daemon. Any local user can connect to a loopback port, so
+ * the daemon writes a random token to a file only its owner can read, and refuses requests without it.
+ */
+final class DaemonToken {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom random = new SecureRandom();
+
+    private DaemonToken() {
+    }
+
+    /**
+     * @param port Port of the daemon
+     * @return File holding the token of the daemon listening on the port, in the user home
+     */
+    static Path file(final int port) {
+        return Paths.get(System.getProperty("user.home"), ".copado-yaml", "daemon-" + port + ".token");
+    }
+
+    /**
+     * Write a new random token readable by its owner only, replacing the previous one.
+     *
+     * @param file Token file, its directory is created readable by its owner only
+     * @return Token written
+     * @throws IOException when the file can not be written
+     */
+    static String create(final Path file) throws IOException {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(TOKEN_BYTES * 2);
+        for (byte value : bytes) {
+            token.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        Path temporary;
+        if (posix) {
+            if (!Files.isDirectory(directory)) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            }
+            // created with owner-only permissions, so the token is never readable by others
+            temporary = Files.createTempFile(directory, ".tmp-", null,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, ".tmp-", null);
+            File temporaryFile = temporary.toFile();
+            temporaryFile.setReadable(false, false);
+            temporaryFile.setReadable(true, true);
+            temporaryFile.setWritable(false, false);
+            temporaryFile.setWritable(true, true);
+        }
+        try {
+            Files.write(temporary, token.toString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return token.toString();
+    }
+
+    /**
+     * @return Token in the file, empty when it can not be read
+     */
+    static Optional<String> read(final Path file) {
+        try {
+            return Optional.of(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Compare in constant time, so the time to refuse a request does not reveal the token.
+     */
+    static boolean matches(final String expected, final String token) {
+        return token != null && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,182 @@
+package copado.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import copado.Cli;
+import copado.Log;
+import copado.metrics.ValidationMetrics;
+import copado.yaml.RegexAnalyzer;
+import copado.yaml.RegexChecker;
+import copado.yaml.YamlProcessor;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.ObjectName;
+
+/**
+ * Long-running validation daemon. It keeps a warm JVM and a single {@link YamlProcessor}, and runs the
+ * command line for clients connected on a loopback port, several at once. The metrics of the validations
+ * run are published through JMX, named after the port.
+ * <p>
+ * Only connections from the local host are accepted, since the daemon reads and writes local files on
+ * behalf of its clients, and only requests with the token it writes on start to a file readable by the user
+ * running it, so other local users can not run commands as that user.
+ */
+public class ValidationServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final YamlProcessor yamlProcessor = new YamlProcessor(RegexChecker.COMPILE, RegexAnalyzer.NONE, new ValidationMetrics());
+    private final ObjectName metricsName;
+    private final Path tokenFile;
+    private final String token;
+    private final Log log = new Log(System.out, System.err);
+
+    /**
+     * @param port    Loopback port to listen on, 0 for any free port
+     * @param threads Clients served at the same time
+     * @throws IOException when the port can not be bound or the token file can not be written
+     */
+    public ValidationServer(final int port, final int threads) throws IOException {
+        this(port, threads, null);
+    }
+
+    /**
+     * @param tokenFile Where the token clients must present is written, null for the one of the port in the user home
+     */
+    ValidationServer(final int port, final int threads, final Path tokenFile) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        try {
+            this.tokenFile = tokenFile != null ? tokenFile : DaemonToken.file(getPort());
+            this.token = DaemonToken.create(this.tokenFile);
+        } catch (IOException ex) {
+            serverSocket.close();
+            throw ex;
+        }
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.metricsName = yamlProcessor.getMetrics().register("daemon-" + getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept clients until the server is closed.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                workers.execute(() -> handle(socket));
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Unable to accept client connection: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        workers.shutdownNow();
+        ValidationMetrics.unregister(metricsName);
+        Files.deleteIfExists(tokenFile);
+    }
+
+    private void handle(final Socket socket) {
+        try (Socket client = socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null) {
+                return;
+            }
+            DaemonRequest request;
+            try {
+                request = DaemonProtocol.jsonMapper.readValue(line, DaemonRequest.class);
+            } catch (JsonProcessingException ex) {
+                writer.print(DaemonProtocol.REFUSED + "request is not valid JSON: " + ex.getOriginalMessage() + "\n");
+                writer.flush();
+                return;
+            }
+            if (!DaemonToken.matches(token, request.getToken())) {
+                writer.print(DaemonProtocol.REFUSED + "token does not match\n");
+            } else if (request.getVersion() != DaemonProtocol.VERSION) {
+                writer.print(DaemonProtocol.REFUSED + "protocol version " + DaemonProtocol.VERSION + " does not match " + request.getVersion() + "\n");
+            } else if (request.getArgs() == null || request.getArgs().contains(null) || request.getWorkingDirectory() == null) {
+                writer.print(DaemonProtocol.REFUSED + "request has no arguments or working directory\n");
+            } else {
+                int exitCode = execute(request, new ClientLog(writer));
+                writer.print(DaemonProtocol.EXIT + exitCode + "\n");
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            // the client went away, there is nobody to report to
+        }
+    }
+
+    private int execute(final DaemonRequest request, final ClientLog clientLog) {
+        if (request.getArgs().contains("--server")) {
+            clientLog.error("Option --server is not accepted by a running daemon");
+            return 1;
+        }
+        InputStream stdin = new ByteArrayInputStream(request.getStdin() != null
+                ? request.getStdin().getBytes(StandardCharsets.UTF_8)
+                : new byte[0]);
+        Cli cli = new Cli(clientLog, stdin, new File(request.getWorkingDirectory()), yamlProcessor);
+        try {
+            return cli.run(request.getArgs().toArray(new String[0]));
+        } catch (RuntimeException | StackOverflowError ex) {
+            // the worker goes on serving other clients, the failure is reported to both sides
+            log.error("Command " + request.getArgs() + " failed: " + ex);
+            clientLog.error("Daemon failed to run the command: " + ex);
+            return 1;
+        }
+    }
+
+    /**
+     * Sends every output line to the client, tagged with the stream it was written to.
+     */
+    private static class ClientLog extends Log {
+        private final PrintWriter writer;
+
+        ClientLog(final PrintWriter writer) {
+            super(null, null);
+            this.writer = writer;
+        }
+
+        @Override
+        public void info(final String message) {
+            write(DaemonProtocol.STDOUT, message);
+        }
+
+        @Override
+        public void error(final String message) {
+            write(DaemonProtocol.STDERR, message);
+        }
+
+        private synchronized void write(final String stream, final String message) {
+            for (String line : message.split("\n", -1)) {
+                writer.print(stream + line + "\n");
+            }
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package copado.watch;
+
+import copado.yaml.CopadoYaml;
+import copado.yaml.CopadoYamlRule;
+import copado.yaml.DuplicateAnalyzer;
+import copado.yaml.EntryListener;
+import copado.yaml.ExpandedRegexValidator;
+import copado.yaml.RuleValidator;
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidationMessage;
+import copado.yaml.YamlValidations;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Validates successive versions of the same Copado YAML, keeping the result of each regex_lib entry
+ * and rule of the last version. Only entries whose hash changed are checked again, together with the
+ * rules pointing to a regex_lib entry that changed, was added or was removed. The expressions of a
+ * rule expanded with its replace values are checked again with the rule. Messages get the line and column
+ * of the current version, so an entry that only moved keeps its result and is reported where it is now.
+ * <p>
+ * An instance is not thread-safe.
+ */
+public class IncrementalValidator {
+
+    private final YamlProcessor yamlProcessor;
+    private final RuleValidator ruleValidator = new RuleValidator();
+
+    private Map<String, Checked<String>> regexes = Collections.emptyMap();
+    private Map<String, Checked<CopadoYamlRule>> rules = Collections.emptyMap();
+
+    /**
+     * @param yamlProcessor Processor used to read the file and to check regex_lib entries
+     */
+    public IncrementalValidator(final YamlProcessor yamlProcessor) {
+        this.yamlProcessor = yamlProcessor;
+    }
+
+    /**
+     * Validate the current version of the file.
+     * <p>
+     * When the structure is not valid the file is validated as a whole and the results of the last
+     * valid version are kept, so the next save that fixes it is still checked incrementally.
+     *
+     * @param yamlFile Copado YAML file
+     * @return Validation messages and how many entries were checked again
+     */
+    public WatchResult validate(final File yamlFile) {
+        CopadoYaml yaml = new CopadoYaml();
+        yaml.setRegex_lib(new LinkedHashMap<>());
+        yaml.setRules(new LinkedHashMap<>());
+        Map<String, Location> regexLocations = new HashMap<>();
+        Map<String, Location> ruleLocations = new HashMap<>();
+        YamlValidations structureErrors = new YamlValidations();
+        yamlProcessor.read(yamlFile, new EntryListener() {
+            @Override
+            public void onRegex(final String name, final String regEx, final int line, final int column) {
+                yaml.getRegex_lib().put(name, regEx);
+                regexLocations.put(name, new Location(line, column));
+            }
+
+            @Override
+            public void onRule(final String name, final CopadoYamlRule rule, final int line, final int column) {
+                yaml.getRules().put(name, rule);
+                ruleLocations.put(name, new Location(line, column));
+            }
+        }, structureErrors);
+        if (structureErrors.hasErrors()) {
+            return new WatchResult(yamlProcessor.isValid(yamlFile), 0, 0, 0, 0);
+        }
+        return validate(yaml, regexLocations, ruleLocations);
+    }
+
+    /**
+     * Validate a new version of the YAML. Its messages have no line and column.
+     *
+     * @param yaml YAML content with both regex_lib and rules sections
+     * @return Validation messages and how many entries were checked again
+     */
+    public WatchResult validate(final CopadoYaml yaml) {
+        return validate(yaml, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    private WatchResult validate(final CopadoYaml yaml, final Map<String, Location> regexLocations,
+                                 final Map<String, Location> ruleLocations) {
+        Set<String> changedRegexes = new HashSet<>();
+        Map<String, Checked<String>> currentRegexes = new HashMap<>(capacity(yaml.getRegex_lib().size()));
+        yaml.getRegex_lib().forEach((name, regEx) -> {
+            Checked<String> previous = regexes.get(name);
+            if (previous != null && previous.isSame(regEx)) {
+                currentRegexes.put(name, previous);
+            } else {
+                changedRegexes.add(name);
+                currentRegexes.put(name, new Checked<>(regEx, yamlProcessor.validateRegEx(name, regEx)
+                        .map(Collections::singletonList)
+                        .orElse(Collections.emptyList()), Collections.emptyList()));
+            }
+        });
+        regexes.keySet().stream()
+                .filter(name -> !currentRegexes.containsKey(name))
+                .forEach(changedRegexes::add);
+
+        Map<String, Checked<CopadoYamlRule>> currentRules = new HashMap<>(capacity(yaml.getRules().size()));
+        Map<String, CopadoYamlRule> changedRules = new LinkedHashMap<>();
+        ExpandedRegexValidator expandedRegexValidator = new ExpandedRegexValidator(ForkJoinPool.commonPool(),
+                yamlProcessor.getMetrics(), yamlProcessor.getRegexChecker());
+        for (Map.Entry<String, CopadoYamlRule> entry : yaml.getRules().entrySet()) {
+            String name = entry.getKey();
+            CopadoYamlRule rule = entry.getValue();
+            Checked<CopadoYamlRule> previous = rules.get(name);
+            if (previous != null && previous.isSame(rule) && !dependsOn(rule, changedRegexes)) {
+                currentRules.put(name, previous);
+            } else {
+                changedRules.put(name, rule);
+                if (rule != null && rule.getRegex_name() != null) {
+                    expandedRegexValidator.add(name, yaml.getRegex_lib().get(rule.getRegex_name()), rule.getReplace_values(), null, null);
+                }
+            }
+        }
+        Map<String, List<YamlValidationMessage>> expansionMessages = expandedRegexValidator.validate().stream()
+                .collect(Collectors.groupingBy(YamlValidationMessage::getNode));
+        changedRules.forEach((name, rule) -> currentRules.put(name, new Checked<>(rule,
+                ruleValidator.validateRule(name, rule, currentRegexes::containsKey),
+                expansionMessages.getOrDefault(name, Collections.emptyList()))));
+        regexes = currentRegexes;
+        rules = currentRules;
+
+        // Same order as a full validation: regex_lib, rules, then expanded expressions
+        YamlValidations validations = new YamlValidations();
+        yaml.getRegex_lib().keySet().forEach(name -> locate(regexes.get(name).messages, regexLocations.get(name), validations));
+        yaml.getRules().keySet().forEach(name -> locate(rules.get(name).messages, ruleLocations.get(name), validations));
+        yaml.getRules().keySet().forEach(name -> locate(rules.get(name).expansionMessages, ruleLocations.get(name), validations));
+        if (yamlProcessor.isCheckDuplicates()) {
+            // it takes close to linear time, so the whole document is analyzed again
+            DuplicateAnalyzer duplicateAnalyzer = new DuplicateAnalyzer();
+            yaml.getRegex_lib().forEach((name, regEx) -> {
+                Location location = regexLocations.getOrDefault(name, Location.UNKNOWN);
+                duplicateAnalyzer.addRegex(name, regEx, location.line, location.column);
+            });
+            yaml.getRules().forEach((name, rule) -> {
+                Location location = ruleLocations.getOrDefault(name, Location.UNKNOWN);
+                duplicateAnalyzer.addRule(name, rule, location.line, location.column);
+            });
+            validations.getYamlValidationMessages().addAll(duplicateAnalyzer.analyze());
+        }
+        int checkedRegexes = (int) changedRegexes.stream().filter(currentRegexes::containsKey).count();
+        return new WatchResult(validations, checkedRegexes, currentRegexes.size(), changedRules.size(), currentRules.size());
+    }
+
+    /**
+     * Add the messages kept for an entry, placed where the entry is in the current version.
+     */
+    private static void locate(final List<YamlValidationMessage> messages, final Location location, final YamlValidations validations) {
+        for (YamlValidationMessage message : messages) {
+            validations.getYamlValidationMessages().add(location == null ? message
+                    : new YamlValidationMessage(message.getMessage(), message.getNode(), location.line, location.column));
+        }
+    }
+
+    private static boolean dependsOn(final CopadoYamlRule rule, final Set<String> changedRegexes) {
+        return rule != null && rule.getRegex_name() != null && changedRegexes.contains(rule.getRegex_name());
+    }
+
+    private static int capacity(final int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    /**
+     * Line and column where an entry starts.
+     */
+    private static class Location {
+        private static final Location UNKNOWN = new Location(null, null);
+
+        private final Integer line;
+        private final Integer column;
+
+        Location(final Integer line, final Integer column) {
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    /**
+     * Result of checking one entry, with the hash of the definition it was computed from.
+     */
+    private static class Checked<T> {
+        private final T definition;
+        private final int hash;
+        private final List<YamlValidationMessage> messages;
+        private final List<YamlValidationMessage> expansionMessages;
+
+        Checked(final T definition, final List<YamlValidationMessage> messages, final List<YamlValidationMessage> expansionMessages) {
+            this.definition = definition;
+            this.hash = Objects.hashCode(definition);
+            this.messages = messages;
+            this.expansionMessages = expansionMessages;
+        }
+
+        boolean isSame(final T other) {
+            return hash == Objects.hashCode(other) && Objects.equals(definition, other);
+        }
+    }
+}
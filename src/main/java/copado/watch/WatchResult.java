@@ -0,0 +1,31 @@
+package copado.watch;
+
+import copado.yaml.YamlValidations;
+import lombok.Value;
+
+/**
+ * Result of validating one version of a watched Copado YAML.
+ */
+@Value
+public class WatchResult {
+    /**
+     * Messages of the whole file, including the ones kept from the previous version
+     */
+    YamlValidations validations;
+    /**
+     * regex_lib entries checked again
+     */
+    int checkedRegexes;
+    /**
+     * regex_lib entries in the file
+     */
+    int totalRegexes;
+    /**
+     * Rules checked again
+     */
+    int checkedRules;
+    /**
+     * Rules in the file
+     */
+    int totalRules;
+}
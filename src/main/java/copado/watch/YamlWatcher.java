@@ -0,0 +1,77 @@
+package copado.watch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifies every time a file is saved, watching the directory that contains it.
+ * Editors often write a file in several steps (truncate and write, or write a temporary file and
+ * rename it), so events are collected until the directory is quiet for {@link #QUIET_MILLIS}.
+ */
+public class YamlWatcher implements Closeable {
+
+    static final long QUIET_MILLIS = 50;
+
+    private final Path fileName;
+    private final WatchService watchService;
+
+    /**
+     * @param yamlFile File to watch
+     * @throws IOException when the directory of the file can not be watched
+     */
+    public YamlWatcher(final File yamlFile) throws IOException {
+        Path path = yamlFile.getAbsoluteFile().toPath();
+        this.fileName = path.getFileName();
+        this.watchService = path.getFileSystem().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Run the action after each save, until the watcher is closed, the directory is no longer
+     * accessible or the thread is interrupted.
+     *
+     * @param onChange Action run after the file is saved
+     * @throws InterruptedException when the thread is interrupted
+     */
+    public void watch(final Runnable onChange) throws InterruptedException {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                while (key != null) {
+                    changed |= isFileEvent(key);
+                    if (!key.reset()) {
+                        return;
+                    }
+                    key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    onChange.run();
+                }
+            }
+        } catch (ClosedWatchServiceException ex) {
+            // closed from another thread
+        }
+    }
+
+    private boolean isFileEvent(final WatchKey key) {
+        boolean fileEvent = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            fileEvent |= fileName.equals(event.context());
+        }
+        return fileEvent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,322 @@
+package copado.yaml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable model of the rules of a Copado YAML, built while the file is parsed, taking a fraction of the
+ * heap of {@link CopadoYaml} on very large files.
+ * <p>
+ * Generated YAMLs repeat the same few strings and lists over tens of thousands of rules: extensions,
+ * branches, replace_with. Those strings and every list are interned while building, so each distinct one is
+ * held once, and rules are stored as columns: each rule points to its regex_lib entry by index and to its
+ * lists by the id of the distinct list. File names, extensions and branches are also kept as shared sets,
+ * ready to be looked up.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public final class CompactYaml {
+
+    /**
+     * Index of the regex of a rule without regex_name or whose regex_name is not in regex_lib
+     */
+    public static final int NO_REGEX = -1;
+
+    /**
+     * Id of a list that is not defined
+     */
+    private static final int NO_LIST = -1;
+
+    private final String[] regexNames;
+    private final String[] regexes;
+    private final Map<String, Integer> regexIndex;
+
+    private final String[] ruleNames;
+    private final int[] ruleRegexes;
+    private final String[] replaceWith;
+    private final int[] replaceValues;
+    private final int[] fileNames;
+    private final int[] extensions;
+    private final int[] branches;
+    private final int[] exclusionBranches;
+
+    /**
+     * Distinct lists by id
+     */
+    private final List<String>[] lists;
+    /**
+     * Distinct lists used as file names, extensions or branches, as sets; null for the other ids
+     */
+    private final Set<String>[] sets;
+
+    private CompactYaml(final Builder builder) {
+        this.regexNames = builder.regexNames.toArray(new String[0]);
+        this.regexes = builder.regexes.toArray(new String[0]);
+        this.regexIndex = new HashMap<>(builder.regexIndex);
+        int size = builder.ruleNames.size();
+        this.ruleNames = builder.ruleNames.toArray(new String[0]);
+        this.ruleRegexes = new int[size];
+        for (int rule = 0; rule < size; rule++) {
+            String regexName = builder.ruleRegexNames.get(rule);
+            Integer index = regexName != null ? regexIndex.get(regexName) : null;
+            ruleRegexes[rule] = index != null ? index : NO_REGEX;
+        }
+        this.replaceWith = builder.replaceWith.toArray(new String[0]);
+        this.replaceValues = Arrays.copyOf(builder.replaceValues, size);
+        this.fileNames = Arrays.copyOf(builder.fileNames, size);
+        this.extensions = Arrays.copyOf(builder.extensions, size);
+        this.branches = Arrays.copyOf(builder.branches, size);
+        this.exclusionBranches = Arrays.copyOf(builder.exclusionBranches, size);
+        this.lists = toArray(builder.lists);
+
+        BitSet selectors = new BitSet(lists.length);
+        for (int[] column : new int[][]{fileNames, extensions, branches, exclusionBranches}) {
+            for (int id : column) {
+                if (id != NO_LIST) {
+                    selectors.set(id);
+                }
+            }
+        }
+        this.sets = newSetArray(lists.length);
+        selectors.stream().forEach(id -> sets[id] = Collections.unmodifiableSet(new HashSet<>(lists[id])));
+    }
+
+    /**
+     * Build the compact model of a YAML already mapped into its object model.
+     *
+     * @param yaml YAML with both regex_lib and rules sections
+     */
+    public static CompactYaml of(final CopadoYaml yaml) {
+        Builder builder = new Builder();
+        yaml.getRegex_lib().forEach(builder::addRegex);
+        yaml.getRules().forEach(builder::addRule);
+        return builder.build();
+    }
+
+    public int getRegexCount() {
+        return regexNames.length;
+    }
+
+    public String getRegexName(final int regex) {
+        return regexNames[regex];
+    }
+
+    public String getRegex(final int regex) {
+        return regexes[regex];
+    }
+
+    /**
+     * @return Index of a regex_lib entry, {@link #NO_REGEX} when it is not defined
+     */
+    public int indexOfRegex(final String regexName) {
+        Integer index = regexIndex.get(regexName);
+        return index != null ? index : NO_REGEX;
+    }
+
+    public int getRuleCount() {
+        return ruleNames.length;
+    }
+
+    public String getRuleName(final int rule) {
+        return ruleNames[rule];
+    }
+
+    /**
+     * @return Index of the regex_lib entry of a rule, {@link #NO_REGEX} when it has none or it is not defined
+     */
+    public int getRegexIndex(final int rule) {
+        return ruleRegexes[rule];
+    }
+
+    /**
+     * @return Expression of a rule, null when it has none
+     */
+    public String getTemplate(final int rule) {
+        return ruleRegexes[rule] != NO_REGEX ? regexes[ruleRegexes[rule]] : null;
+    }
+
+    public String getReplaceWith(final int rule) {
+        return replaceWith[rule];
+    }
+
+    /**
+     * @return Replace values of a rule, shared with every rule with the same ones; null when it has none
+     */
+    public List<String> getReplaceValues(final int rule) {
+        return list(replaceValues[rule]);
+    }
+
+    /**
+     * @return File names of a rule, shared with every rule with the same ones; null when it has none
+     */
+    public Set<String> getFileNames(final int rule) {
+        return set(fileNames[rule]);
+    }
+
+    /**
+     * @return Extensions of a rule, shared with every rule with the same ones; null when it has none
+     */
+    public Set<String> getExtensions(final int rule) {
+        return set(extensions[rule]);
+    }
+
+    /**
+     * @return Branches of a rule, shared with every rule with the same ones; null when it has none
+     */
+    public Set<String> getBranches(final int rule) {
+        return set(branches[rule]);
+    }
+
+    /**
+     * @return Exclusion branches of a rule, shared with every rule with the same ones; null when it has none
+     */
+    public Set<String> getExclusionBranches(final int rule) {
+        return set(exclusionBranches[rule]);
+    }
+
+    /**
+     * @return Number of distinct lists held for all the rules
+     */
+    public int getDistinctLists() {
+        return lists.length;
+    }
+
+    private List<String> list(final int id) {
+        return id != NO_LIST ? lists[id] : null;
+    }
+
+    private Set<String> set(final int id) {
+        return id != NO_LIST ? sets[id] : null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<String>[] toArray(final List<List<String>> lists) {
+        return lists.toArray(new List[0]);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Set<String>[] newSetArray(final int size) {
+        return new Set[size];
+    }
+
+    /**
+     * Collects regex_lib entries and rules in the order they are read, interning their strings and lists.
+     * Rules may be added before the regex_lib entries they point to. A builder is not thread-safe.
+     */
+    public static final class Builder {
+        private final Map<String, String> strings = new HashMap<>();
+        private final Map<List<String>, Integer> listIds = new HashMap<>();
+        private final List<List<String>> lists = new ArrayList<>();
+
+        private final List<String> regexNames = new ArrayList<>();
+        private final List<String> regexes = new ArrayList<>();
+        private final Map<String, Integer> regexIndex = new HashMap<>();
+
+        private final List<String> ruleNames = new ArrayList<>();
+        private final Map<String, Integer> ruleIndex = new HashMap<>();
+        private final List<String> ruleRegexNames = new ArrayList<>();
+        private final List<String> replaceWith = new ArrayList<>();
+        private int[] replaceValues = new int[16];
+        private int[] fileNames = new int[16];
+        private int[] extensions = new int[16];
+        private int[] branches = new int[16];
+        private int[] exclusionBranches = new int[16];
+
+        /**
+         * @return The instance of the string held by the model, null for null
+         */
+        public String intern(final String value) {
+            if (value == null) {
+                return null;
+            }
+            String interned = strings.putIfAbsent(value, value);
+            return interned != null ? interned : value;
+        }
+
+        /**
+         * @return The unmodifiable instance of the list held by the model, null for null
+         */
+        public List<String> intern(final List<String> values) {
+            int id = listId(values, false);
+            return id != NO_LIST ? lists.get(id) : null;
+        }
+
+        public void addRegex(final String name, final String regEx) {
+            String regexName = intern(name);
+            if (regexIndex.putIfAbsent(regexName, regexNames.size()) == null) {
+                regexNames.add(regexName);
+                regexes.add(regEx);
+            } else {
+                regexes.set(regexIndex.get(regexName), regEx);
+            }
+        }
+
+        /**
+         * Add a rule, or replace the earlier one with the same name in its position, as mapping the YAML
+         * into {@link CopadoYaml} keeps the last definition.
+         *
+         * @param rule Rule definition, null when the rule has no parameters
+         */
+        public void addRule(final String name, final CopadoYamlRule rule) {
+            CopadoYamlRule definition = rule != null ? rule : new CopadoYamlRule();
+            Integer previous = ruleIndex.putIfAbsent(name, ruleNames.size());
+            if (previous != null) {
+                set(previous, definition);
+                return;
+            }
+            int position = ruleNames.size();
+            if (position == replaceValues.length) {
+                int capacity = position * 2;
+                replaceValues = Arrays.copyOf(replaceValues, capacity);
+                fileNames = Arrays.copyOf(fileNames, capacity);
+                extensions = Arrays.copyOf(extensions, capacity);
+                branches = Arrays.copyOf(branches, capacity);
+                exclusionBranches = Arrays.copyOf(exclusionBranches, capacity);
+            }
+            ruleNames.add(name);
+            ruleRegexNames.add(null);
+            replaceWith.add(null);
+            set(position, definition);
+        }
+
+        public CompactYaml build() {
+            return new CompactYaml(this);
+        }
+
+        private void set(final int position, final CopadoYamlRule definition) {
+            ruleRegexNames.set(position, intern(definition.getRegex_name()));
+            replaceWith.set(position, intern(definition.getReplace_with()));
+            // replace values are seldom repeated across lists, only whole lists are shared
+            replaceValues[position] = listId(definition.getReplace_values(), false);
+            fileNames[position] = listId(definition.getFile_names(), true);
+            extensions[position] = listId(definition.getExtensions(), true);
+            branches[position] = listId(definition.getBranches(), true);
+            exclusionBranches[position] = listId(definition.getExclusion_branches(), true);
+        }
+
+        private int listId(final List<String> values, final boolean internValues) {
+            if (values == null) {
+                return NO_LIST;
+            }
+            Integer id = listIds.get(values);
+            if (id == null) {
+                String[] interned = new String[values.size()];
+                for (int i = 0; i < interned.length; i++) {
+                    interned[i] = internValues ? intern(values.get(i)) : values.get(i);
+                }
+                id = lists.size();
+                List<String> list = Collections.unmodifiableList(Arrays.asList(interned));
+                lists.add(list);
+                listIds.put(list, id);
+            }
+            return id;
+        }
+    }
+}
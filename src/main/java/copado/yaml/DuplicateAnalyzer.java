@@ -0,0 +1,480 @@
+package copado.yaml;
+
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Finds regex_lib entries and rules that add nothing to a Copado YAML: regex_lib entries with the same
+ * expression as an earlier one or not used by any rule, rules identical to an earlier one, and rules whose
+ * expressions are already applied by broader rules.
+ * <p>
+ * Rules are compared by what Copado runs: the regex_lib expression and each replace value, so rules pointing
+ * to different regex_lib entries with the same expression are alike. Each expression of each rule is indexed
+ * with its replace_with, without expanding it, and also under each file name or extension and branch the rule
+ * selects. Only the rules sharing an expression and a file and branch of a rule are looked up to find one that
+ * covers it, so the analysis takes close to linear time and little memory. Exact duplicates are found through a fingerprint of
+ * each rule, checked entry by entry. A rule covers another one when it has the same replace_with, selects all
+ * its files and applies on all its branches.
+ * <p>
+ * An instance analyzes a single document and is not thread-safe.
+ */
+public class DuplicateAnalyzer {
+
+    private static final String DUPLICATE_REGEX_MESSAGE = "Regular expression is the same as regex_lib entry: %s";
+    private static final String UNUSED_REGEX_MESSAGE = "Regular expression is not used by any rule";
+    private static final String DUPLICATE_RULE_MESSAGE = "Rule is a duplicate of rule: %s";
+    private static final String REDUNDANT_RULE_MESSAGE = "Rule is redundant, rule %s applies the same expressions to the same files and branches";
+    private static final String REDUNDANT_VALUES_MESSAGE = "Rule is redundant, its replace values are applied by rules: %s";
+    private static final String REPEATED_VALUES_MESSAGE = "Replace values already applied by rule %s: %s";
+
+    /**
+     * Replace values of a rule whose expression does not depend on them
+     */
+    private static final List<String> NO_VALUES = Collections.singletonList(null);
+    private static final String FILE_SELECTOR = "f:";
+    private static final String EXTENSION_SELECTOR = "e:";
+
+    private final Map<String, RegexEntry> regexLib = new LinkedHashMap<>();
+    private final List<RuleEntry> rules = new ArrayList<>();
+
+    /**
+     * Analyze a YAML already mapped into its object model.
+     *
+     * @param yaml YAML with both regex_lib and rules sections
+     * @return Messages found, regex_lib entries first, without line and column
+     */
+    public static List<YamlValidationMessage> analyze(final CopadoYaml yaml) {
+        DuplicateAnalyzer analyzer = new DuplicateAnalyzer();
+        yaml.getRegex_lib().forEach((name, regEx) -> analyzer.addRegex(name, regEx, null, null));
+        yaml.getRules().forEach((name, rule) -> analyzer.addRule(name, rule, null, null));
+        return analyzer.analyze();
+    }
+
+    /**
+     * Add a regex_lib entry, in the order they are defined.
+     */
+    public void addRegex(final String name, final String regEx, final Integer line, final Integer column) {
+        regexLib.put(name, new RegexEntry(name, regEx, line, column));
+    }
+
+    /**
+     * Add a rule, in the order they are defined. Its regex_name is resolved when the document is analyzed.
+     */
+    public void addRule(final String name, final CopadoYamlRule rule, final Integer line, final Integer column) {
+        if (rule != null) {
+            rules.add(new RuleEntry(name, rule, line, column));
+        }
+    }
+
+    /**
+     * @return Messages found, regex_lib entries first, each section in the order it is defined
+     */
+    public List<YamlValidationMessage> analyze() {
+        List<YamlValidationMessage> messages = new ArrayList<>();
+        analyzeRegexLib(messages);
+        analyzeRules(messages);
+        return messages;
+    }
+
+    private void analyzeRegexLib(final List<YamlValidationMessage> messages) {
+        Set<String> used = new HashSet<>();
+        rules.forEach(rule -> used.add(rule.regexName));
+        Map<String, String> firstByRegex = new HashMap<>();
+        for (RegexEntry entry : regexLib.values()) {
+            String first = entry.regEx != null ? firstByRegex.putIfAbsent(entry.regEx, entry.name) : null;
+            if (first != null) {
+                messages.add(new YamlValidationMessage(String.format(DUPLICATE_REGEX_MESSAGE, first), entry.name, entry.line, entry.column));
+            }
+            if (!used.contains(entry.name)) {
+                messages.add(new YamlValidationMessage(UNUSED_REGEX_MESSAGE, entry.name, entry.line, entry.column));
+            }
+        }
+    }
+
+    private void analyzeRules(final List<YamlValidationMessage> messages) {
+        // rules with the same expression and replace_with share a group, their replace values are then comparable
+        Map<String, Integer> templates = new HashMap<>();
+        Map<List<Object>, Integer> groups = new HashMap<>();
+        List<RuleEntry> analyzed = new ArrayList<>();
+        int expressions = 0;
+        long selections = 0;
+        for (RuleEntry rule : rules) {
+            RegexEntry regex = regexLib.get(rule.regexName);
+            // rules that select nothing or have no expression are already reported by the validation
+            if (regex == null || regex.regEx == null || (rule.fileNames.isEmpty() && rule.extensions.isEmpty())) {
+                continue;
+            }
+            Integer template = templates.computeIfAbsent(regex.regEx, key -> templates.size());
+            rule.group = groups.computeIfAbsent(Arrays.asList(template, rule.replaceWith), key -> groups.size());
+            if (rule.values.isEmpty() || !regex.regEx.contains(ExpandedRegexValidator.REPLACE_VALUE)) {
+                rule.values = NO_VALUES;
+            }
+            rule.index = analyzed.size();
+            rule.selectors = rule.selectors();
+            analyzed.add(rule);
+            expressions += rule.values.size();
+            selections += (long) rule.values.size() * rule.selectors.size();
+        }
+
+        ExpressionIndex index = new ExpressionIndex(expressions);
+        ExpressionIndex coverage = new ExpressionIndex(Math.toIntExact(selections));
+        Map<Long, RuleEntry> byFingerprint = new HashMap<>();
+        for (RuleEntry rule : analyzed) {
+            long fingerprint = rule.targetsFingerprint();
+            for (String value : rule.values) {
+                if (index.add(rule.group, value, null, rule.index)) {
+                    rule.distinctValues++;
+                    fingerprint += mix(Objects.hashCode(value));
+                    for (String selector : rule.selectors) {
+                        coverage.add(rule.group, value, selector, rule.index);
+                    }
+                }
+            }
+            RuleEntry first = byFingerprint.putIfAbsent(fingerprint, rule);
+            if (first != null && first.isSame(rule)) {
+                rule.duplicateOf = first;
+            }
+        }
+
+        for (RuleEntry rule : analyzed) {
+            if (rule.duplicateOf != null) {
+                messages.add(rule.message(String.format(DUPLICATE_RULE_MESSAGE, rule.duplicateOf.name)));
+                continue;
+            }
+            Map<String, List<String>> valuesByRule = new LinkedHashMap<>();
+            int covered = 0;
+            List<String> candidates = rule.coveringSelectors();
+            for (String value : rule.values) {
+                if (!index.visit(rule.group, value, rule.index)) {
+                    continue;
+                }
+                RuleEntry cover = null;
+                if (candidates.isEmpty()) {
+                    // the rule excludes all its branches, any rule selecting its files covers it
+                    cover = firstCovering(analyzed, index, rule, value, null, null);
+                }
+                for (String selector : candidates) {
+                    cover = firstCovering(analyzed, coverage, rule, value, selector, cover);
+                }
+                if (cover != null) {
+                    valuesByRule.computeIfAbsent(cover.name, name -> new ArrayList<>()).add(value);
+                    covered++;
+                }
+            }
+            if (covered == rule.distinctValues) {
+                messages.add(rule.message(valuesByRule.size() == 1
+                        ? String.format(REDUNDANT_RULE_MESSAGE, valuesByRule.keySet().iterator().next())
+                        : String.format(REDUNDANT_VALUES_MESSAGE, String.join(", ", valuesByRule.keySet()))));
+            } else {
+                valuesByRule.forEach((other, values) ->
+                        messages.add(rule.message(String.format(REPEATED_VALUES_MESSAGE, other, String.join(", ", values)))));
+            }
+        }
+    }
+
+    /**
+     * @param found Rule covering the value found so far, only earlier rules are looked up
+     * @return First rule listed under the expression and selector that covers the rule, or the one found so far
+     */
+    private static RuleEntry firstCovering(final List<RuleEntry> analyzed, final ExpressionIndex index, final RuleEntry rule,
+                                           final String value, final String selector, final RuleEntry found) {
+        for (int posting = index.first(rule.group, value, selector); posting >= 0; posting = index.next(posting)) {
+            RuleEntry other = analyzed.get(index.rule(posting));
+            if (found != null && other.index >= found.index) {
+                break;
+            }
+            // of two rules selecting the same files and branches only the later one is reported
+            if (other != rule && other.duplicateOf == null && other.selectsAll(rule)
+                    && (!rule.selectsAll(other) || other.index < rule.index)) {
+                return other;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Spread a hash over 64 bits, so the hashes of the values can be added up whatever their order.
+     */
+    private static long mix(final long hash) {
+        long mixed = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return mixed ^ (mixed >>> 33);
+    }
+
+    private static Set<String> toSet(final List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return values.size() == 1 ? Collections.singleton(values.get(0)) : new HashSet<>(values);
+    }
+
+    @AllArgsConstructor
+    private static class RegexEntry {
+        private final String name;
+        private final String regEx;
+        private final Integer line;
+        private final Integer column;
+    }
+
+    private static class RuleEntry {
+        private final String name;
+        private final Integer line;
+        private final Integer column;
+        private final String regexName;
+        private final String replaceWith;
+        private final Set<String> fileNames;
+        private final Set<String> extensions;
+        private final Set<String> branches;
+        private final Set<String> exclusionBranches;
+        /**
+         * Replace values, a single null value when the expression does not depend on them
+         */
+        private List<String> values;
+        /**
+         * Position among the rules analyzed
+         */
+        private int index;
+        /**
+         * Expression and replace_with of the rule
+         */
+        private int group;
+        /**
+         * Files and branches the rule is indexed under
+         */
+        private List<String> selectors;
+        private int distinctValues;
+        private RuleEntry duplicateOf;
+
+        RuleEntry(final String name, final CopadoYamlRule rule, final Integer line, final Integer column) {
+            this.name = name;
+            this.line = line;
+            this.column = column;
+            this.regexName = rule.getRegex_name();
+            this.replaceWith = rule.getReplace_with() != null ? rule.getReplace_with() : "";
+            this.fileNames = toSet(rule.getFile_names());
+            this.extensions = toSet(rule.getExtensions());
+            this.branches = toSet(rule.getBranches());
+            this.exclusionBranches = toSet(rule.getExclusion_branches());
+            this.values = rule.getReplace_values() != null ? rule.getReplace_values() : Collections.emptyList();
+        }
+
+        long targetsFingerprint() {
+            return mix(Objects.hash(group, fileNames, extensions, branches, exclusionBranches));
+        }
+
+        /**
+         * Whether both rules have the same expression, replace_with, targets, branches and replace values.
+         */
+        boolean isSame(final RuleEntry other) {
+            if (group != other.group || distinctValues != other.distinctValues || !fileNames.equals(other.fileNames)
+                    || !extensions.equals(other.extensions) || !branches.equals(other.branches)
+                    || !exclusionBranches.equals(other.exclusionBranches)) {
+                return false;
+            }
+            return new HashSet<>(values).containsAll(other.values);
+        }
+
+        /**
+         * Whether this rule applies on all the files and branches of the other one.
+         */
+        boolean selectsAll(final RuleEntry other) {
+            return coversFiles(other) && coversBranches(other);
+        }
+
+        private boolean coversFiles(final RuleEntry other) {
+            if (other.fileNames.isEmpty()) {
+                return fileNames.isEmpty() && extensions.containsAll(other.extensions);
+            }
+            for (String fileName : other.fileNames) {
+                boolean selected = !fileNames.isEmpty() ? fileNames.contains(fileName) : extensions.contains(extension(fileName));
+                if (!selected) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean coversBranches(final RuleEntry other) {
+            if (!other.branches.isEmpty()) {
+                for (String branch : other.branches) {
+                    boolean applies = (branches.isEmpty() || branches.contains(branch)) && !exclusionBranches.contains(branch);
+                    if (!applies && !other.exclusionBranches.contains(branch)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            // the other rule applies on every branch it does not exclude
+            return branches.isEmpty() && other.exclusionBranches.containsAll(exclusionBranches);
+        }
+
+        /**
+         * @return A selector for each file name, or each extension when there are none, on each branch
+         */
+        List<String> selectors() {
+            List<String> selectors = new ArrayList<>();
+            for (String target : !fileNames.isEmpty() ? fileNames : extensions) {
+                String file = (!fileNames.isEmpty() ? FILE_SELECTOR : EXTENSION_SELECTOR) + target;
+                if (branches.isEmpty()) {
+                    selectors.add(selector(file, null));
+                }
+                for (String branch : branches) {
+                    selectors.add(selector(file, branch));
+                }
+            }
+            return selectors;
+        }
+
+        /**
+         * A rule covering this one selects one of its files, by name or extension, and applies on one of the
+         * branches it does not exclude, or on every branch, so it is indexed under one of these selectors.
+         *
+         * @return Selectors of the rules that may cover this one, empty when the rule excludes all its branches
+         */
+        List<String> coveringSelectors() {
+            String branch = null;
+            if (!branches.isEmpty()) {
+                branch = branches.stream().filter(name -> !exclusionBranches.contains(name)).findFirst().orElse(null);
+                if (branch == null) {
+                    return Collections.emptyList();
+                }
+            }
+            List<String> files = new ArrayList<>();
+            if (!fileNames.isEmpty()) {
+                String fileName = fileNames.iterator().next();
+                files.add(FILE_SELECTOR + fileName);
+                files.add(EXTENSION_SELECTOR + extension(fileName));
+            } else {
+                files.add(EXTENSION_SELECTOR + extensions.iterator().next());
+            }
+            List<String> selectors = new ArrayList<>();
+            for (String file : files) {
+                selectors.add(selector(file, null));
+                if (branch != null) {
+                    selectors.add(selector(file, branch));
+                }
+            }
+            return selectors;
+        }
+
+        private static String selector(final String file, final String branch) {
+            return branch != null ? file + '\0' + branch : file;
+        }
+
+        YamlValidationMessage message(final String text) {
+            return new YamlValidationMessage(text, name, line, column);
+        }
+
+        private static String extension(final String fileName) {
+            int dot = fileName.lastIndexOf('.');
+            return dot >= 0 ? fileName.substring(dot + 1) : null;
+        }
+    }
+
+    /**
+     * Rules of each expression, keyed by group, replace value and an optional selector of files and branch. It
+     * is an open addressing table over arrays with a linked list of rules per key, so each expression takes a
+     * few bytes.
+     */
+    private static class ExpressionIndex {
+        private final int mask;
+        private final int[] groups;
+        private final String[] values;
+        private final String[] selectors;
+        private final int[] heads;
+        private final int[] tails;
+        /**
+         * Last rule that visited each key, plus one
+         */
+        private final int[] visitors;
+        private final int[] postingRules;
+        private final int[] postingNext;
+        private int postings;
+
+        ExpressionIndex(final int expressions) {
+            int capacity = Integer.highestOneBit(Math.max(1, expressions)) << 2;
+            this.mask = capacity - 1;
+            this.groups = new int[capacity];
+            this.values = new String[capacity];
+            this.selectors = new String[capacity];
+            this.heads = new int[capacity];
+            this.tails = new int[capacity];
+            this.visitors = new int[capacity];
+            this.postingRules = new int[expressions];
+            this.postingNext = new int[expressions];
+            Arrays.fill(heads, -1);
+        }
+
+        /**
+         * Add a rule to the list of an expression, rules being added one after the other.
+         *
+         * @return false when the rule repeats the value
+         */
+        boolean add(final int group, final String value, final String selector, final int rule) {
+            int slot = slot(group, value, selector);
+            if (heads[slot] < 0) {
+                groups[slot] = group;
+                values[slot] = value;
+                selectors[slot] = selector;
+                heads[slot] = postings;
+            } else if (postingRules[tails[slot]] == rule) {
+                return false;
+            } else {
+                postingNext[tails[slot]] = postings;
+            }
+            postingRules[postings] = rule;
+            postingNext[postings] = -1;
+            tails[slot] = postings++;
+            return true;
+        }
+
+        /**
+         * Mark an expression as visited by a rule.
+         *
+         * @return false when the rule already visited it
+         */
+        boolean visit(final int group, final String value, final int rule) {
+            int slot = slot(group, value, null);
+            if (visitors[slot] == rule + 1) {
+                return false;
+            }
+            visitors[slot] = rule + 1;
+            return true;
+        }
+
+        /**
+         * @return First posting of the rules with the expression, in the order they were added
+         */
+        int first(final int group, final String value, final String selector) {
+            return heads[slot(group, value, selector)];
+        }
+
+        int next(final int posting) {
+            return postingNext[posting];
+        }
+
+        int rule(final int posting) {
+            return postingRules[posting];
+        }
+
+        private int slot(final int group, final String value, final String selector) {
+            int hash = (Objects.hashCode(value) * 31 + Objects.hashCode(selector)) * 31 + group;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (heads[slot] >= 0 && (groups[slot] != group || !Objects.equals(values[slot], value)
+                    || !Objects.equals(selectors[slot], selector))) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
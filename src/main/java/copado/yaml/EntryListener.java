@@ -0,0 +1,24 @@
+package copado.yaml;
+
+/**
+ * Receives each entry of a YAML as it is read, with the line and column where it starts, so a caller can keep
+ * its own model of the document and place its messages like a full validation does.
+ */
+public interface EntryListener {
+
+    /**
+     * @param name   regex_lib entry name
+     * @param regEx  Regular expression, null when it is empty
+     * @param line   Line where the entry starts
+     * @param column Column where the entry starts
+     */
+    void onRegex(String name, String regEx, int line, int column);
+
+    /**
+     * @param name   Rule name
+     * @param rule   Rule read, with null fields when they are not defined
+     * @param line   Line where the rule starts
+     * @param column Column where the rule starts
+     */
+    void onRule(String name, CopadoYamlRule rule, int line, int column);
+}
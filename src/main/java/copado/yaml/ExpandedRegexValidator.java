@@ -0,0 +1,253 @@
+package copado.yaml;
+
+import copado.metrics.ValidationMetrics;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Checks the regular expressions Copado really runs: each regex_lib template with every replace value
+ * of the rules pointing to it substituted in. A template that compiles may still give an invalid
+ * expression for a value with symbols such as {@code (} or {@code \}.
+ * <p>
+ * Compilation starts on a fork-join pool in chunks while rules are still being added. Expansions are
+ * reported and dropped as soon as the chunks deciding them are done, at most {@link #MAX_CHUNKS_IN_FLIGHT}
+ * chunks are pending and at most about {@link #MAX_PENDING_EXPANSIONS} expansions wait for them, so memory
+ * does not grow with the number of rules and replace values. Identical
+ * expressions are compiled once while they are among the last {@link #MAX_KNOWN_EXPRESSIONS} distinct ones
+ * seen, which covers the templates and the values repeated by neighbouring rules. The last chunk is compiled
+ * by the thread waiting for the result, so small documents never go through the shared pool and many of them
+ * can be validated at once on their own threads. Templates that do not compile are left to the regex_lib
+ * validation. An instance checks a single document and is not thread-safe.
+ */
+public class ExpandedRegexValidator {
+
+    /**
+     * Text of the regex_lib templates replaced by each replace value
+     */
+    public static final String REPLACE_VALUE = "___REPLACEVALUE___";
+
+    /**
+     * Expressions compiled by each task of the pool
+     */
+    static final int CHUNK_SIZE = 256;
+
+    /**
+     * Chunks submitted to the pool and not joined yet; adding rules waits for the oldest beyond this
+     */
+    static final int MAX_CHUNKS_IN_FLIGHT = 16;
+
+    /**
+     * Expansions not reported yet beyond which the pending chunk is submitted, and the oldest chunks are
+     * waited for, even when rules only repeat expressions already seen
+     */
+    static final int MAX_PENDING_EXPANSIONS = CHUNK_SIZE * MAX_CHUNKS_IN_FLIGHT;
+
+    /**
+     * Distinct expressions whose verdict is remembered to compile identical ones once
+     */
+    static final int MAX_KNOWN_EXPRESSIONS = 16384;
+
+    private static final String INVALID_EXPANSION_MESSAGE = "Regular Expression is not valid with replace value: %s";
+
+    private final ForkJoinPool pool;
+    private final ValidationMetrics metrics;
+    private final RegexChecker regexChecker;
+    private final Map<String, Verdict> verdicts = new LinkedHashMap<String, Verdict>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Verdict> eldest) {
+            // an expression still compiling only loses its reuse, expansions keep their verdict
+            return size() > MAX_KNOWN_EXPRESSIONS;
+        }
+    };
+    /**
+     * Expansions not reported yet, in the order they were added
+     */
+    private final Deque<Expansion> expansions = new ArrayDeque<>();
+    private final Deque<ForkJoinTask<?>> tasks = new ArrayDeque<>();
+    private final List<YamlValidationMessage> messages = new ArrayList<>();
+    private List<Verdict> chunk = new ArrayList<>(CHUNK_SIZE);
+
+    public ExpandedRegexValidator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool Pool where the expressions are compiled
+     */
+    public ExpandedRegexValidator(final ForkJoinPool pool) {
+        this(pool, ValidationMetrics.NONE);
+    }
+
+    /**
+     * @param pool    Pool where the expressions are compiled
+     * @param metrics Where the compile time of each expression is recorded
+     */
+    public ExpandedRegexValidator(final ForkJoinPool pool, final ValidationMetrics metrics) {
+        this(pool, metrics, RegexChecker.COMPILE);
+    }
+
+    /**
+     * @param pool         Pool where the expressions are compiled
+     * @param metrics      Where the compile time of each expression is recorded
+     * @param regexChecker Decides whether each expression is valid, it must be thread-safe
+     */
+    public ExpandedRegexValidator(final ForkJoinPool pool, final ValidationMetrics metrics, final RegexChecker regexChecker) {
+        this.pool = pool;
+        this.metrics = metrics;
+        this.regexChecker = regexChecker;
+    }
+
+    /**
+     * Substitute the replace value into a regex_lib template.
+     *
+     * @param template regex_lib expression
+     * @param value    Replace value, null to leave the template as it is
+     * @return Regular expression Copado runs
+     */
+    public static String expand(final String template, final String value) {
+        return value == null ? template : template.replace(REPLACE_VALUE, value);
+    }
+
+    /**
+     * Add the expressions of a rule.
+     *
+     * @param ruleName      Rule name, used as node of the messages
+     * @param template      regex_lib expression of the rule, null when it is not defined
+     * @param replaceValues Replace values of the rule, null when it has none
+     * @param line          Line of the rule, null when it is unknown
+     * @param column        Column of the rule, null when it is unknown
+     */
+    public void add(final String ruleName, final String template, final List<String> replaceValues,
+                    final Integer line, final Integer column) {
+        if (template == null || replaceValues == null || !template.contains(REPLACE_VALUE)) {
+            return;
+        }
+        Verdict templateVerdict = verdict(ruleName, template);
+        for (String value : replaceValues) {
+            if (value != null) {
+                expansions.add(new Expansion(ruleName, value, line, column, templateVerdict, verdict(ruleName, expand(template, value))));
+            }
+        }
+        reportDecided();
+        if (expansions.size() > MAX_PENDING_EXPANSIONS) {
+            // the oldest expansions may wait for a chunk not full yet, while later rules only repeat known expressions
+            if (!chunk.isEmpty()) {
+                submitChunk();
+            }
+            while (expansions.size() > MAX_PENDING_EXPANSIONS && !tasks.isEmpty()) {
+                tasks.poll().join();
+                reportDecided();
+            }
+        }
+    }
+
+    /**
+     * @return Expansions not reported yet
+     */
+    int pending() {
+        return expansions.size();
+    }
+
+    /**
+     * Wait for every expression added to be compiled.
+     *
+     * @return Messages of the expressions that are not valid, in the order they were added
+     */
+    public List<YamlValidationMessage> validate() {
+        chunk.forEach(verdict -> verdict.compile(regexChecker, metrics));
+        chunk = new ArrayList<>(0);
+        while (!tasks.isEmpty()) {
+            tasks.poll().join();
+        }
+        reportDecided();
+        return messages;
+    }
+
+    private Verdict verdict(final String ruleName, final String regEx) {
+        Verdict verdict = verdicts.get(regEx);
+        if (verdict == null) {
+            verdict = new Verdict(ruleName, regEx);
+            verdicts.put(regEx, verdict);
+            chunk.add(verdict);
+            if (chunk.size() == CHUNK_SIZE) {
+                submitChunk();
+            }
+        }
+        return verdict;
+    }
+
+    private void submitChunk() {
+        List<Verdict> compiled = chunk;
+        chunk = new ArrayList<>(CHUNK_SIZE);
+        tasks.add(pool.submit(() -> compiled.forEach(verdict -> verdict.compile(regexChecker, metrics))));
+        if (tasks.size() > MAX_CHUNKS_IN_FLIGHT) {
+            tasks.poll().join();
+        }
+    }
+
+    /**
+     * Report and drop the oldest expansions whose expressions are decided.
+     */
+    private void reportDecided() {
+        while (!tasks.isEmpty() && tasks.peek().isDone()) {
+            tasks.poll().join();
+        }
+        while (!expansions.isEmpty() && expansions.peek().isDecided()) {
+            Expansion expansion = expansions.poll();
+            if (expansion.template.valid && !expansion.expression.valid) {
+                messages.add(new YamlValidationMessage(String.format(INVALID_EXPANSION_MESSAGE, expansion.value),
+                        expansion.ruleName, expansion.line, expansion.column));
+            }
+        }
+    }
+
+    /**
+     * Whether a distinct expression compiles. It is written by a task of the pool, or by the waiting thread for
+     * the last chunk, and only read once decided is set.
+     */
+    private static class Verdict {
+        /**
+         * First rule the expression comes from
+         */
+        private final String ruleName;
+        private final String regEx;
+        private boolean valid;
+        private volatile boolean decided;
+
+        Verdict(final String ruleName, final String regEx) {
+            this.ruleName = ruleName;
+            this.regEx = regEx;
+        }
+
+        void compile(final RegexChecker regexChecker, final ValidationMetrics metrics) {
+            long start = metrics.start();
+            valid = regexChecker.isValid(regEx);
+            metrics.expandedRegexCompiled(ruleName, regEx, start);
+            decided = true;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Expansion {
+        private final String ruleName;
+        private final String value;
+        private final Integer line;
+        private final Integer column;
+        private final Verdict template;
+        private final Verdict expression;
+
+        boolean isDecided() {
+            return template.decided && expression.decided;
+        }
+    }
+}
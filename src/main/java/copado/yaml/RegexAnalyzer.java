@@ -0,0 +1,29 @@
+package copado.yaml;
+
+import java.util.Optional;
+
+/**
+ * Additional check run on every regex_lib expression that compiles, reported on its regex_lib key.
+ * Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface RegexAnalyzer {
+
+    /**
+     * Analyzer that accepts every expression.
+     */
+    RegexAnalyzer NONE = regEx -> Optional.empty();
+
+    /**
+     * @param regEx Regular expression that compiles
+     * @return Message describing the problem found, empty when there is none
+     */
+    Optional<String> analyze(String regEx);
+
+    /**
+     * Identifies the analyzer and its settings, it is part of the key of cached results.
+     */
+    default String key() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,30 @@
+package copado.yaml;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides whether a regex_lib expression is a valid regular expression.
+ * Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface RegexChecker {
+
+    /**
+     * Checker that compiles the expression every time.
+     */
+    RegexChecker COMPILE = regEx -> {
+        try {
+            Pattern.compile(regEx);
+            return true;
+        } catch (PatternSyntaxException ex) {
+            return false;
+        }
+    };
+
+    /**
+     * @param regEx Regular expression, never null
+     * @return true when the expression compiles
+     */
+    boolean isValid(String regEx);
+}
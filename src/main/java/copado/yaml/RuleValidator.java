@@ -0,0 +1,85 @@
+package copado.yaml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Checks every rule of a Copado YAML in a single pass. Each rule is visited once and all its
+ * problems are reported, using the rule name as node, instead of stopping at the first one.
+ * Very large rule maps are split across cores.
+ */
+public class RuleValidator {
+
+    /**
+     * Rule maps bigger than this are validated with a parallel stream.
+     */
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    private static final Pattern EXTENSION_PATTERN = Pattern.compile(".*[\\W].*");
+    private static final String INVALID_EXTENSION_PATTERN = "Extensions must be a string without symbols: %s";
+
+    /**
+     * Validate all rules of the YAML.
+     *
+     * @param yaml        YAML with a non null rules and regex_lib sections
+     * @param validations Where the messages found are added
+     */
+    public void validate(final CopadoYaml yaml, final YamlValidations validations) {
+        Map<String, CopadoYamlRule> rules = yaml.getRules();
+        Predicate<String> regexExists = yaml.getRegex_lib()::containsKey;
+        if (rules.size() > PARALLEL_THRESHOLD) {
+            validations.getYamlValidationMessages().addAll(rules.entrySet().parallelStream()
+                    .map(entry -> validateRule(entry.getKey(), entry.getValue(), regexExists))
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList()));
+        } else {
+            rules.forEach((name, rule) -> validations.getYamlValidationMessages().addAll(validateRule(name, rule, regexExists)));
+        }
+    }
+
+    /**
+     * Validate a single rule.
+     *
+     * @param name        Rule name, used as node of the messages
+     * @param rule        Rule definition, null when the rule has no parameters
+     * @param regexExists Tells whether a regex name is defined on regex_lib
+     * @return Messages found, empty when the rule is valid
+     */
+    public List<YamlValidationMessage> validateRule(final String name, final CopadoYamlRule rule, final Predicate<String> regexExists) {
+        CopadoYamlRule definition = rule != null ? rule : new CopadoYamlRule();
+        List<YamlValidationMessage> messages = null;
+        if (definition.getRegex_name() == null) {
+            messages = add(messages, name, "Regex node must be defined");
+        } else if (!regexExists.test(definition.getRegex_name())) {
+            messages = add(messages, name, "Regular expression name in this rule was not found");
+        }
+        if (definition.getFile_names() == null && definition.getExtensions() == null) {
+            messages = add(messages, name, "At least file_names or extensions node must be defined");
+        }
+        if (definition.getFile_names() != null && definition.getExtensions() != null) {
+            messages = add(messages, name, "Is not possible to use file_names and extensions nodes at same time");
+        }
+        if (definition.getExtensions() != null) {
+            for (String extension : definition.getExtensions()) {
+                if (extension == null || EXTENSION_PATTERN.matcher(extension).matches()) {
+                    messages = add(messages, name, String.format(INVALID_EXTENSION_PATTERN, extension));
+                }
+            }
+        }
+        if (definition.getBranches() != null && definition.getExclusion_branches() != null) {
+            messages = add(messages, name, "Is not possible to use branches and exclusion_branches nodes at same time");
+        }
+        return messages != null ? messages : Collections.emptyList();
+    }
+
+    private static List<YamlValidationMessage> add(final List<YamlValidationMessage> messages, final String node, final String message) {
+        List<YamlValidationMessage> result = messages != null ? messages : new ArrayList<>(2);
+        result.add(new YamlValidationMessage(message, node));
+        return result;
+    }
+}
@@ -0,0 +1,354 @@
+package copado.yaml;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import copado.exception.CopadoYamlValidationException;
+import copado.metrics.ValidationMetrics;
+import lombok.AllArgsConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Validates a Copado YAML reading the parser tokens, without binding the whole document.
+ * Each regex is compiled and each rule is checked as soon as it is read, so memory depends on the
+ * number of regex names, not on the size of the file. Messages carry the line and column of the node
+ * and are given to a {@link ValidationListener} as they are found. The expressions of each rule expanded
+ * with its replace values are compiled on a fork-join pool while the rest of the document is read. Without
+ * checks it only reads the entries for an {@link EntryListener}, reporting structure errors.
+ * <p>
+ * An instance validates a single document and is not thread-safe.
+ */
+class StreamingYamlValidator {
+
+    private static final String ROOT_NODE = "root";
+    private static final String STRUCTURE_MESSAGE = "YAML is not compliance with required structure";
+    private static final String INVALID_REGEX_MESSAGE = "Regular Expression is not valid";
+    private static final String REGEX_NOT_FOUND_MESSAGE = "Regular expression name in this rule was not found";
+
+    private final RuleValidator ruleValidator;
+    private final RegexChecker regexChecker;
+    private final RegexAnalyzer regexAnalyzer;
+    private final ValidationMetrics metrics;
+
+    private final ValidationListener listener;
+    /**
+     * Receives every entry read, null when nobody does
+     */
+    private final EntryListener entries;
+    /**
+     * Whether entries are checked, or only read
+     */
+    private final boolean checkEntries;
+    /**
+     * Expressions of the rules expanded with their replace values, null when entries are not checked
+     */
+    private final ExpandedRegexValidator expandedRegexValidator;
+    /**
+     * Fingerprints of every entry read, null when duplicates are not checked
+     */
+    private final DuplicateAnalyzer duplicateAnalyzer;
+    /**
+     * Model of the rules being built, null when it is not kept
+     */
+    private final CompactYaml.Builder model;
+    /**
+     * regex_lib expressions read so far by name
+     */
+    private final Map<String, String> regexLib = new HashMap<>();
+    /**
+     * Rules read before regex_lib whose regex_name could not be resolved yet
+     */
+    private final List<PendingRegexName> pendingRegexNames = new ArrayList<>();
+    private boolean regexLibRead;
+    private boolean rulesRead;
+
+    /**
+     * @param metrics         Where the time of each check is recorded
+     * @param checkDuplicates Report duplicate, redundant and unused entries once the whole document is read
+     * @param model           Where every entry read is added, null to keep nothing
+     * @param listener        Receives each message as soon as it is found
+     */
+    StreamingYamlValidator(final RuleValidator ruleValidator, final RegexChecker regexChecker, final RegexAnalyzer regexAnalyzer,
+                           final ValidationMetrics metrics, final boolean checkDuplicates, final CompactYaml.Builder model,
+                           final ValidationListener listener) {
+        this.ruleValidator = ruleValidator;
+        this.regexChecker = regexChecker;
+        this.regexAnalyzer = regexAnalyzer;
+        this.metrics = metrics;
+        this.listener = listener;
+        this.entries = null;
+        this.checkEntries = true;
+        this.expandedRegexValidator = new ExpandedRegexValidator(ForkJoinPool.commonPool(), metrics, regexChecker);
+        this.duplicateAnalyzer = checkDuplicates ? new DuplicateAnalyzer() : null;
+        this.model = model;
+    }
+
+    /**
+     * Read the entries without checking them.
+     *
+     * @param entries  Receives every entry read
+     * @param listener Receives the structure errors
+     */
+    StreamingYamlValidator(final EntryListener entries, final ValidationListener listener) {
+        this.ruleValidator = null;
+        this.regexChecker = null;
+        this.regexAnalyzer = null;
+        this.metrics = ValidationMetrics.NONE;
+        this.listener = listener;
+        this.entries = entries;
+        this.checkEntries = false;
+        this.expandedRegexValidator = null;
+        this.duplicateAnalyzer = null;
+        this.model = null;
+    }
+
+    /**
+     * Validate the document read by the parser.
+     *
+     * @param parser Parser positioned before the first token, it is closed at the end
+     */
+    void validate(final JsonParser parser) {
+        try (JsonParser yamlParser = parser) {
+            readDocument(yamlParser);
+            if (!checkEntries) {
+                return;
+            }
+            resolvePendingRegexNames();
+            long start = metrics.start();
+            List<YamlValidationMessage> expansionMessages = expandedRegexValidator.validate();
+            metrics.record(ValidationMetrics.Phase.EXPANDED_REGEX_WAIT, start);
+            expansionMessages.forEach(listener::onMessage);
+            if (duplicateAnalyzer != null) {
+                duplicateAnalyzer.analyze().forEach(listener::onMessage);
+            }
+        } catch (CopadoYamlValidationException ex) {
+            fail(ex.getMessage(), ex.getLine(), ex.getColumn());
+        } catch (JsonProcessingException ex) {
+            JsonLocation location = ex.getLocation();
+            fail(STRUCTURE_MESSAGE, location != null ? location.getLineNr() : null, location != null ? location.getColumnNr() : null);
+        } catch (IOException | YAMLException ex) {
+            // SnakeYAML reports the failures of the underlying reader as YAMLException
+            fail(STRUCTURE_MESSAGE, null, null);
+        }
+    }
+
+    private void readDocument(final JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw structureError(parser);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String section = parser.getCurrentName();
+            token = parser.nextToken();
+            if ("regex_lib".equals(section)) {
+                regexLibRead = readSection(parser, token, this::readRegexLib);
+            } else if ("rules".equals(section)) {
+                rulesRead = readSection(parser, token, this::readRules);
+            } else {
+                throw structureError(parser);
+            }
+        }
+        if (!regexLibRead || !rulesRead) {
+            throw new CopadoYamlValidationException(ROOT_NODE, STRUCTURE_MESSAGE);
+        }
+    }
+
+    private boolean readSection(final JsonParser parser, final JsonToken token, final SectionReader reader) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw structureError(parser);
+        }
+        reader.read(parser);
+        return true;
+    }
+
+    private void readRegexLib(final JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonLocation location = parser.getTokenLocation();
+            String regEx = readScalar(parser, parser.nextToken());
+            regexLib.put(name, regEx);
+            if (model != null) {
+                model.addRegex(name, regEx);
+            }
+            if (entries != null) {
+                entries.onRegex(name, regEx, location.getLineNr(), location.getColumnNr());
+            }
+            if (!checkEntries) {
+                continue;
+            }
+            if (duplicateAnalyzer != null) {
+                duplicateAnalyzer.addRegex(name, regEx, location.getLineNr(), location.getColumnNr());
+            }
+            long start = metrics.start();
+            boolean valid = isValidRegEx(regEx);
+            metrics.regexCompiled(name, regEx, start);
+            if (!valid) {
+                listener.onMessage(message(INVALID_REGEX_MESSAGE, name, location));
+            } else {
+                start = metrics.start();
+                Optional<String> problem = regexAnalyzer.analyze(regEx);
+                metrics.record(ValidationMetrics.Phase.REGEX_ANALYSIS, start);
+                problem.ifPresent(text -> listener.onMessage(message(text, name, location)));
+            }
+        }
+    }
+
+    private void readRules(final JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonLocation location = parser.getTokenLocation();
+            JsonToken token = parser.nextToken();
+            CopadoYamlRule rule = new CopadoYamlRule();
+            if (token == JsonToken.START_OBJECT) {
+                readRule(parser, rule);
+            } else if (token != JsonToken.VALUE_NULL) {
+                throw structureError(parser);
+            }
+            if (entries != null) {
+                entries.onRule(name, rule, location.getLineNr(), location.getColumnNr());
+            }
+            if (!checkEntries) {
+                continue;
+            }
+            validateRule(name, rule, location);
+            if (model != null) {
+                model.addRule(name, rule);
+            }
+            if (duplicateAnalyzer != null) {
+                duplicateAnalyzer.addRule(name, rule, location.getLineNr(), location.getColumnNr());
+            }
+        }
+    }
+
+    private void readRule(final JsonParser parser, final CopadoYamlRule rule) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "file_names":
+                    rule.setFile_names(readList(parser, token));
+                    break;
+                case "extensions":
+                    rule.setExtensions(readList(parser, token));
+                    break;
+                case "replace_values":
+                    rule.setReplace_values(readList(parser, token));
+                    break;
+                case "branches":
+                    rule.setBranches(readList(parser, token));
+                    break;
+                case "exclusion_branches":
+                    rule.setExclusion_branches(readList(parser, token));
+                    break;
+                case "replace_with":
+                    rule.setReplace_with(readScalar(parser, token));
+                    break;
+                case "regex_name":
+                    rule.setRegex_name(readScalar(parser, token));
+                    break;
+                default:
+                    throw structureError(parser);
+            }
+        }
+    }
+
+    private void validateRule(final String name, final CopadoYamlRule rule, final JsonLocation location) {
+        String regexName = rule.getRegex_name();
+        // regex_lib may come after rules, then unknown regex names are checked once the whole document is read
+        boolean deferRegexName = !regexLibRead && regexName != null && !regexLib.containsKey(regexName);
+        Predicate<String> regexExists = deferRegexName ? regex -> true : regexLib::containsKey;
+        long start = metrics.start();
+        List<YamlValidationMessage> messages = ruleValidator.validateRule(name, rule, regexExists);
+        metrics.ruleChecked(start);
+        messages.forEach(message -> addWithLocation(message, location));
+        if (deferRegexName) {
+            pendingRegexNames.add(new PendingRegexName(regexName, rule.getReplace_values(), message(REGEX_NOT_FOUND_MESSAGE, name, location)));
+        } else if (regexName != null) {
+            expandedRegexValidator.add(name, regexLib.get(regexName), rule.getReplace_values(), location.getLineNr(), location.getColumnNr());
+        }
+    }
+
+    private void resolvePendingRegexNames() {
+        for (PendingRegexName pending : pendingRegexNames) {
+            if (regexLib.containsKey(pending.regexName)) {
+                expandedRegexValidator.add(pending.message.getNode(), regexLib.get(pending.regexName), pending.replaceValues,
+                        pending.message.getLine(), pending.message.getColumn());
+            } else {
+                listener.onMessage(pending.message);
+            }
+        }
+    }
+
+    private List<String> readList(final JsonParser parser, final JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw structureError(parser);
+        }
+        List<String> values = new ArrayList<>();
+        JsonToken item;
+        while ((item = parser.nextToken()) != JsonToken.END_ARRAY) {
+            values.add(readScalar(parser, item));
+        }
+        return values;
+    }
+
+    private String readScalar(final JsonParser parser, final JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == null || !token.isScalarValue()) {
+            throw structureError(parser);
+        }
+        return parser.getText();
+    }
+
+    private boolean isValidRegEx(final String regEx) {
+        return regEx != null && regexChecker.isValid(regEx);
+    }
+
+    private void addWithLocation(final YamlValidationMessage message, final JsonLocation location) {
+        message.setLine(location.getLineNr());
+        message.setColumn(location.getColumnNr());
+        listener.onMessage(message);
+    }
+
+    private void fail(final String message, final Integer line, final Integer column) {
+        listener.onStructureError(new YamlValidationMessage(message, ROOT_NODE, line, column));
+    }
+
+    private static YamlValidationMessage message(final String message, final String node, final JsonLocation location) {
+        return new YamlValidationMessage(message, node, location.getLineNr(), location.getColumnNr());
+    }
+
+    private static CopadoYamlValidationException structureError(final JsonParser parser) {
+        JsonLocation location = parser.getTokenLocation();
+        return new CopadoYamlValidationException(ROOT_NODE, STRUCTURE_MESSAGE, location.getLineNr(), location.getColumnNr());
+    }
+
+    @AllArgsConstructor
+    private static class PendingRegexName {
+        private final String regexName;
+        private final List<String> replaceValues;
+        private final YamlValidationMessage message;
+    }
+
+    @FunctionalInterface
+    private interface SectionReader {
+        void read(JsonParser parser) throws IOException;
+    }
+}
@@ -0,0 +1,26 @@
+package copado.yaml;
+
+/**
+ * Receives the validation messages of a YAML as soon as they are found, so they can be written out
+ * without keeping them all in memory.
+ */
+@FunctionalInterface
+public interface ValidationListener {
+
+    /**
+     * A problem found in a regex or a rule.
+     *
+     * @param message Validation message
+     */
+    void onMessage(YamlValidationMessage message);
+
+    /**
+     * The document does not follow the required structure, so the messages found before can not be trusted.
+     * Listeners that keep messages drop them; listeners that already wrote them out just receive one more.
+     *
+     * @param message Validation message of the root node
+     */
+    default void onStructureError(final YamlValidationMessage message) {
+        onMessage(message);
+    }
+}
@@ -1,158 +1,391 @@
 package copado.yaml;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import copado.exception.CopadoYamlValidationException;
+import copado.metrics.ValidationMetrics;
+import org.yaml.snakeyaml.error.YAMLException;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
+/**
+ * Validates Copado YAML files, or YAML already in memory such as an HTTP upload. Instances hold no mutable
+ * state and may be shared between threads; they write nothing to the console, every problem is reported
+ * as a validation message.
+ */
 public class YamlProcessor {
-    private static final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+    /**
+     * Validation only reads parser tokens, so it does not need databind to be loaded.
+     * A factory is thread-safe and creates a new parser for each file.
+     */
+    private static final YAMLFactory yamlFactory = new YAMLFactory();
 
-    private static final String EXTENSION_REGEX = ".*[\\W].*";
-    private static final String INVALID_EXTENSION_PATTERN = "Extensions must be a string without symbols: %s";
+    private final RuleValidator ruleValidator = new RuleValidator();
+    private final RegexChecker regexChecker;
+    private final RegexAnalyzer regexAnalyzer;
+    private final ValidationMetrics metrics;
+    private final boolean checkDuplicates;
+
+    public YamlProcessor() {
+        this(RegexChecker.COMPILE, RegexAnalyzer.NONE);
+    }
+
+    /**
+     * @param regexChecker  Decides whether regex_lib expressions are valid, it must be thread-safe
+     * @param regexAnalyzer Additional check of the regex_lib expressions that compile, it must be thread-safe
+     */
+    public YamlProcessor(final RegexChecker regexChecker, final RegexAnalyzer regexAnalyzer) {
+        this(regexChecker, regexAnalyzer, ValidationMetrics.NONE);
+    }
+
+    /**
+     * @param regexChecker  Decides whether regex_lib expressions are valid, it must be thread-safe
+     * @param regexAnalyzer Additional check of the regex_lib expressions that compile, it must be thread-safe
+     * @param metrics       Where the timers and counters of each file validated are recorded
+     */
+    public YamlProcessor(final RegexChecker regexChecker, final RegexAnalyzer regexAnalyzer, final ValidationMetrics metrics) {
+        this(regexChecker, regexAnalyzer, metrics, false);
+    }
+
+    /**
+     * @param regexChecker    Decides whether regex_lib expressions are valid, it must be thread-safe
+     * @param regexAnalyzer   Additional check of the regex_lib expressions that compile, it must be thread-safe
+     * @param metrics         Where the timers and counters of each file validated are recorded
+     * @param checkDuplicates Also report duplicate and unused regex_lib entries and rules made redundant by others,
+     *                        see {@link DuplicateAnalyzer}
+     */
+    public YamlProcessor(final RegexChecker regexChecker, final RegexAnalyzer regexAnalyzer, final ValidationMetrics metrics,
+                         final boolean checkDuplicates) {
+        this.regexChecker = regexChecker;
+        this.regexAnalyzer = regexAnalyzer;
+        this.metrics = metrics;
+        this.checkDuplicates = checkDuplicates;
+    }
+
+    public RegexChecker getRegexChecker() {
+        return regexChecker;
+    }
+
+    public RegexAnalyzer getRegexAnalyzer() {
+        return regexAnalyzer;
+    }
+
+    public ValidationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isCheckDuplicates() {
+        return checkDuplicates;
+    }
 
     /**
      * Validate whether a copado yaml file is valid. Validate yaml structure and
-     * regex expressions.
+     * regex expressions, both as defined on regex_lib and expanded with the replace values of each rule.
+     * <p>
+     * The file is read as a stream of tokens, so the memory needed does not depend on its size.
      *
      * @param yamlFile Is the yaml file including the file name.
      * @return ValidatedReplacementYaml that contains information on validation errors and the ReplacementRules to apply
      */
     public YamlValidations isValid(final File yamlFile) {
-        YamlValidations yamlReplacementValidationResult = new YamlValidations();
-        ArrayList<YamlValidationMessage> yamlValidationMessages = new ArrayList<>();
+        YamlValidations validations = new YamlValidations();
+        validate(yamlFile, validations);
+        return validations;
+    }
 
-        try {
-            CopadoYaml yaml = parseYamlFile(yamlFile);
-            validateStructure(yaml);
-            validateRegExs(yaml);
-            validateRules(yaml);
-        } catch (CopadoYamlValidationException ex) {
-            YamlValidationMessage validationMessage = parseValidationExceptionToMessage(ex);
-            yamlValidationMessages.add(validationMessage);
-        }
+    /**
+     * Validate a copado yaml file like {@link #isValid(File)}, giving each message to a listener as soon as
+     * it is found instead of collecting them.
+     *
+     * @param yamlFile Is the yaml file including the file name.
+     * @param listener Receives the validation messages, on the calling thread
+     */
+    public void validate(final File yamlFile, final ValidationListener listener) {
+        validate(yamlFile, null, listener);
+    }
 
-        yamlReplacementValidationResult.setYamlValidationMessages(yamlValidationMessages);
-        return yamlReplacementValidationResult;
+    /**
+     * Validate a copado yaml read from a stream, such as a blob of a git repository, like {@link #isValid(File)}.
+     *
+     * @param content YAML content, closed once it is read
+     * @return Validation messages found
+     */
+    public YamlValidations isValid(final InputStream content) {
+        YamlValidations validations = new YamlValidations();
+        validate(content, validations);
+        return validations;
     }
 
-    private void validateStructure(final CopadoYaml yaml) {
-        if (yaml.rules == null || yaml.regex_lib == null) {
-            throw new CopadoYamlValidationException("root", "YAML is not compliance with required structure");
-        }
+    /**
+     * Validate a copado yaml read from a stream like {@link #validate(File, ValidationListener)}.
+     *
+     * @param content  YAML content, closed once it is read
+     * @param listener Receives the validation messages, on the calling thread
+     */
+    public void validate(final InputStream content, final ValidationListener listener) {
+        validate(() -> yamlFactory.createParser(metrics.meter(content)), null, listener);
     }
 
-    private CopadoYaml parseYamlFile(final File yamlFile) {
-        validateFile(yamlFile);
-        return parseFileToYaml(yamlFile);
+    /**
+     * Validate a copado yaml held in memory like {@link #isValid(File)}.
+     *
+     * @param content YAML content
+     * @return Validation messages found
+     */
+    public YamlValidations isValid(final String content) {
+        YamlValidations validations = new YamlValidations();
+        validate(content, validations);
+        return validations;
     }
 
-    private void validateFile(final File yamlFile) {
-        if (!yamlFile.isFile() || !yamlFile.canRead()) {
-            System.err.println("Unable to read file " + yamlFile);
-            throw new CopadoYamlValidationException("root", "Unable to open YAML");
+    /**
+     * Validate a copado yaml held in memory like {@link #validate(File, ValidationListener)}.
+     *
+     * @param content  YAML content
+     * @param listener Receives the validation messages, on the calling thread
+     */
+    public void validate(final String content, final ValidationListener listener) {
+        validate(() -> yamlFactory.createParser(content), null, listener);
+    }
+
+    /**
+     * Validate a copado yaml held in memory like {@link #isValid(File)}.
+     *
+     * @param content YAML content, encoded in UTF-8, UTF-16 or UTF-32
+     * @return Validation messages found
+     */
+    public YamlValidations isValid(final byte[] content) {
+        YamlValidations validations = new YamlValidations();
+        validate(content, validations);
+        return validations;
+    }
+
+    /**
+     * Validate a copado yaml held in memory like {@link #validate(File, ValidationListener)}.
+     *
+     * @param content  YAML content, encoded in UTF-8, UTF-16 or UTF-32
+     * @param listener Receives the validation messages, on the calling thread
+     */
+    public void validate(final byte[] content, final ValidationListener listener) {
+        validate(() -> metrics.isEnabled()
+                ? yamlFactory.createParser(metrics.meter(new ByteArrayInputStream(content)))
+                : yamlFactory.createParser(content), null, listener);
+    }
+
+    /**
+     * Validate a copado yaml read from a character stream like {@link #isValid(File)}.
+     *
+     * @param content YAML content, closed once it is read
+     * @return Validation messages found
+     */
+    public YamlValidations isValid(final Reader content) {
+        YamlValidations validations = new YamlValidations();
+        validate(content, validations);
+        return validations;
+    }
+
+    /**
+     * Validate a copado yaml read from a character stream like {@link #validate(File, ValidationListener)}.
+     * Metrics do not count the bytes of character input.
+     *
+     * @param content  YAML content, closed once it is read
+     * @param listener Receives the validation messages, on the calling thread
+     */
+    public void validate(final Reader content, final ValidationListener listener) {
+        validate(() -> yamlFactory.createParser(content), null, listener);
+    }
+
+    /**
+     * Validate a copado yaml file like {@link #validate(File, ValidationListener)} and keep its rules in a
+     * {@link CompactYaml}, built while the file is read, instead of mapping it into its object model.
+     *
+     * @param yamlFile Is the yaml file including the file name.
+     * @param listener Receives the validation messages, on the calling thread
+     * @return Model of the entries read, only complete when the listener got no structure error
+     */
+    public CompactYaml load(final File yamlFile, final ValidationListener listener) {
+        CompactYaml.Builder model = new CompactYaml.Builder();
+        validate(yamlFile, model, listener);
+        return model.build();
+    }
+
+    /**
+     * Read the entries of a copado yaml file without checking them, for callers that check them on their own.
+     *
+     * @param yamlFile Is the yaml file including the file name.
+     * @param entries  Receives each regex_lib entry and rule with its location, on the calling thread
+     * @param listener Receives the structure errors only
+     */
+    public void read(final File yamlFile, final EntryListener entries, final ValidationListener listener) {
+        try {
+            validateFile(yamlFile);
+            new StreamingYamlValidator(entries, listener).validate(yamlFactory.createParser(yamlFile));
+        } catch (CopadoYamlValidationException ex) {
+            listener.onStructureError(parseValidationExceptionToMessage(ex));
+        } catch (IOException | YAMLException ex) {
+            listener.onStructureError(new YamlValidationMessage("Unable to open YAML", "root"));
         }
     }
 
-    private CopadoYaml parseFileToYaml(final File yamlFile) {
+    private void validate(final File yamlFile, final CompactYaml.Builder model, final ValidationListener listener) {
+        validate(() -> {
+            validateFile(yamlFile);
+            return createParser(yamlFile);
+        }, model, listener);
+    }
+
+    private void validate(final ParserSource source, final CompactYaml.Builder model, final ValidationListener listener) {
+        long start = metrics.start();
+        long allocatedStart = metrics.threadAllocatedBytes();
         try {
-            yamlMapper.findAndRegisterModules();
-            return yamlMapper.readValue(yamlFile, CopadoYaml.class);
-        } catch (IOException ex) {
-            System.err.println("Unexpected error reading file " + yamlFile);
-            ex.printStackTrace();
-            throw new CopadoYamlValidationException("root", "YAML is not compliance with required structure");
+            new StreamingYamlValidator(ruleValidator, regexChecker, regexAnalyzer, metrics, checkDuplicates, model, listener)
+                    .validate(source.open());
+        } catch (CopadoYamlValidationException ex) {
+            listener.onStructureError(parseValidationExceptionToMessage(ex));
+        } catch (IOException | YAMLException ex) {
+            // SnakeYAML reads the first characters when the parser is created
+            listener.onStructureError(new YamlValidationMessage("Unable to open YAML", "root"));
+        } finally {
+            metrics.fileValidated(start, allocatedStart);
         }
     }
 
-    private void validateRegExs(final CopadoYaml yaml) {
-        yaml.getRegex_lib().values().stream()
-                .forEach(this::validateRegEx);
+    private JsonParser createParser(final File yamlFile) throws IOException {
+        if (!metrics.isEnabled()) {
+            return yamlFactory.createParser(yamlFile);
+        }
+        // the parser closes the stream once the document is read
+        return yamlFactory.createParser(metrics.meter(new FileInputStream(yamlFile)));
     }
 
-    private void validateRules(final CopadoYaml yaml) {
-        validateEmptyRegExNames(yaml);
-        validateInvalidRegExNames(yaml);
-        validateNoFilenameOrExtensions(yaml);
-        validateFilenameAndExtensions(yaml);
-        validateInvalidExtensions(yaml);
-        validateBranchesAndExclusions(yaml);
+    /**
+     * Map a copado yaml file into its object model, validating only that the structure is the expected one.
+     *
+     * @param yamlFile Is the yaml file including the file name.
+     * @return YAML content
+     * @throws CopadoYamlValidationException when the file can not be read or its structure is not valid
+     */
+    public CopadoYaml parseYamlFile(final File yamlFile) {
+        validateFile(yamlFile);
+        CopadoYaml yaml = parseFileToYaml(yamlFile);
+        validateStructure(yaml);
+        return yaml;
     }
 
-    private void validateRegEx(final String regEx) {
+    /**
+     * Validate regex expressions and rules of a YAML already mapped into its object model.
+     *
+     * @param yaml YAML content with both regex_lib and rules sections
+     * @return Validation messages found
+     */
+    public YamlValidations validate(final CopadoYaml yaml) {
+        YamlValidations validations = new YamlValidations();
         try {
-            Pattern.compile(regEx);
-        } catch (PatternSyntaxException ex) {
-            throw new CopadoYamlValidationException("invalid_regex", "Regular Expression is not valid");
+            validateStructure(yaml);
+            validateRegExs(yaml, validations);
+            ruleValidator.validate(yaml, validations);
+            validateExpandedRegExs(yaml, validations);
+            if (checkDuplicates) {
+                validations.getYamlValidationMessages().addAll(DuplicateAnalyzer.analyze(yaml));
+            }
+        } catch (CopadoYamlValidationException ex) {
+            validations.getYamlValidationMessages().add(parseValidationExceptionToMessage(ex));
         }
+        return validations;
     }
 
-    private void validateEmptyRegExNames(final CopadoYaml yaml) {
-        yaml.getRules().values().stream()
-                .forEach(rule -> {
-                    if (rule.getRegex_name() == null) {
-                        throw new CopadoYamlValidationException("empty_regex_name", "Regex node must be defined");
-                    }
-                });
+    private void validateStructure(final CopadoYaml yaml) {
+        if (yaml.rules == null || yaml.regex_lib == null) {
+            throw new CopadoYamlValidationException("root", "YAML is not compliance with required structure");
+        }
     }
 
-    private void validateInvalidRegExNames(final CopadoYaml yaml) {
-        yaml.getRules().values().stream()
-                .forEach(rule -> {
-                    if (!yaml.getRegex_lib().containsKey(rule.getRegex_name())) {
-                        throw new CopadoYamlValidationException("invalid_regex_name", "Regular expression name in this rule was not found");
-                    }
-                });
+    private void validateFile(final File yamlFile) {
+        if (!yamlFile.isFile() || !yamlFile.canRead()) {
+            throw new CopadoYamlValidationException("root", "Unable to open YAML");
+        }
     }
 
-    private void validateNoFilenameOrExtensions(final CopadoYaml yaml) {
-        yaml.getRules().values().stream()
-                .forEach(rule -> {
-                    if (rule.getFile_names() == null && rule.getExtensions() == null) {
-                        throw new CopadoYamlValidationException("no_filename_or_extensions", "At least file_names or extensions node must be defined");
-                    }
-                });
+    private CopadoYaml parseFileToYaml(final File yamlFile) {
+        try {
+            return MapperHolder.yamlReader.readValue(yamlFile);
+        } catch (IOException ex) {
+            throw new CopadoYamlValidationException("root", "YAML is not compliance with required structure");
+        }
     }
 
-    private void validateFilenameAndExtensions(final CopadoYaml yaml) {
-        yaml.getRules().values().stream()
-                .forEach(value -> {
-                    if (value.getFile_names() != null && value.getExtensions() != null) {
-                        throw new CopadoYamlValidationException("filename_and_extensions", "Is not possible to use file_names and extensions nodes at same time");
-                    }
-                });
+    private void validateRegExs(final CopadoYaml yaml, final YamlValidations validations) {
+        Map<String, String> regexLib = yaml.getRegex_lib();
+        if (regexLib.size() > RuleValidator.PARALLEL_THRESHOLD) {
+            List<YamlValidationMessage> messages = regexLib.entrySet().parallelStream()
+                    .map(entry -> validateRegEx(entry.getKey(), entry.getValue()))
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .collect(Collectors.toList());
+            validations.getYamlValidationMessages().addAll(messages);
+        } else {
+            regexLib.forEach((name, regEx) -> validateRegEx(name, regEx)
+                    .ifPresent(validations.getYamlValidationMessages()::add));
+        }
     }
 
-    private void validateInvalidExtensions(final CopadoYaml yaml) {
-        yaml.getRules().values().stream()
-                .filter(value -> value.getExtensions() != null)
-                .flatMap(value -> value.getExtensions().stream())
-                .forEach(extension -> {
-                    if (extension.matches(EXTENSION_REGEX)) {
-                        throw new CopadoYamlValidationException("invalid_extension",
-                                String.format(INVALID_EXTENSION_PATTERN, extension));
-                    }
-                });
+    /**
+     * Validate a single regex_lib expression.
+     *
+     * @param name  Regex name, used as node of the message
+     * @param regEx Regular expression
+     * @return Message found, empty when the expression is valid
+     */
+    public Optional<YamlValidationMessage> validateRegEx(final String name, final String regEx) {
+        if (regEx == null || !regexChecker.isValid(regEx)) {
+            return Optional.of(new YamlValidationMessage("Regular Expression is not valid", name));
+        }
+        return regexAnalyzer.analyze(regEx).map(message -> new YamlValidationMessage(message, name));
     }
 
-    private void validateBranchesAndExclusions(final CopadoYaml yaml) {
-        yaml.getRules().values().stream()
-                .forEach(value -> {
-                    if (value.getBranches() != null && value.getExclusion_branches() != null) {
-                        throw new CopadoYamlValidationException("branches_and_exclusion", "Is not possible to use branches and exclusion_branches nodes at same time");
-                    }
-                });
+    private void validateExpandedRegExs(final CopadoYaml yaml, final YamlValidations validations) {
+        ExpandedRegexValidator expandedRegexValidator = new ExpandedRegexValidator(ForkJoinPool.commonPool(), metrics, regexChecker);
+        yaml.getRules().forEach((name, rule) -> {
+            if (rule != null && rule.getRegex_name() != null) {
+                expandedRegexValidator.add(name, yaml.getRegex_lib().get(rule.getRegex_name()), rule.getReplace_values(), null, null);
+            }
+        });
+        validations.getYamlValidationMessages().addAll(expandedRegexValidator.validate());
     }
 
     private YamlValidationMessage parseValidationExceptionToMessage(final CopadoYamlValidationException exception) {
         YamlValidationMessage validationMessage = new YamlValidationMessage();
         validationMessage.setNode(exception.getNode());
         validationMessage.setMessage(exception.getMessage());
+        validationMessage.setLine(exception.getLine());
+        validationMessage.setColumn(exception.getColumn());
         return validationMessage;
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface ParserSource {
+        JsonParser open() throws IOException;
+    }
+
+    /**
+     * The mapper is only built the first time a YAML is mapped into its object model, keeping databind
+     * out of the startup of plain validations. CopadoYaml only has maps, lists and strings, so no Jackson
+     * modules are discovered through ServiceLoader. The reader is configured once for CopadoYaml, so each
+     * document skips the type lookup of the mapper; readers are immutable and thread-safe.
+     */
+    private static class MapperHolder {
+        private static final ObjectReader yamlReader = new ObjectMapper(new YAMLFactory()).readerFor(CopadoYaml.class);
+    }
+}
@@ -10,4 +10,16 @@ import lombok.NoArgsConstructor;
 public class YamlValidationMessage {
     private String message;
     private String node;
+    /**
+     * Line of the YAML where the node starts, null when unknown
+     */
+    private Integer line;
+    /**
+     * Column of the YAML where the node starts, null when unknown
+     */
+    private Integer column;
+
+    public YamlValidationMessage(final String message, final String node) {
+        this(message, node, null, null);
+    }
 }
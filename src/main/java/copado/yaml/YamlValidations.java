@@ -4,15 +4,30 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class YamlValidations {
-    private List<YamlValidationMessage> yamlValidationMessages;
+public class YamlValidations implements ValidationListener {
+    private List<YamlValidationMessage> yamlValidationMessages = new ArrayList<>();
 
     public boolean hasErrors(){
         return !yamlValidationMessages.isEmpty();
     }
+
+    @Override
+    public void onMessage(final YamlValidationMessage message) {
+        yamlValidationMessages.add(message);
+    }
+
+    /**
+     * Only the structure error is kept.
+     */
+    @Override
+    public void onStructureError(final YamlValidationMessage message) {
+        yamlValidationMessages.clear();
+        yamlValidationMessages.add(message);
+    }
 }
@@ -0,0 +1,116 @@
+package copado.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import copado.yaml.YamlProcessor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class BatchValidatorTest {
+    private BatchValidator batchValidator;
+    private ClassLoader classLoader;
+
+    private final static String VALID_PATH_DIRECTORY = "yaml/valid";
+    private final static String INVALID_PATH_DIRECTORY = "yaml/invalid";
+
+    @Before
+    public void setUp() {
+        classLoader = getClass().getClassLoader();
+        batchValidator = new BatchValidator(new YamlProcessor(), 4);
+    }
+
+    @Test
+    public void testValidate_WhenAllFilesAreValid_ShouldRetrieveNoErrors() {
+        List<File> files = BatchValidator.findYamlFiles(new File(classLoader.getResource(VALID_PATH_DIRECTORY).getPath()));
+        List<BatchResult> results = batchValidator.validate(files);
+        assertEquals("There must be one result per file", files.size(), results.size());
+        assertFalse("Batch must be valid", BatchValidator.hasErrors(results));
+    }
+
+    @Test
+    public void testValidate_WhenMixingValidAndInvalidFiles_ShouldKeepOrderAndReportEachFile() {
+        List<File> files = new ArrayList<>();
+        files.addAll(BatchValidator.findYamlFiles(new File(classLoader.getResource(INVALID_PATH_DIRECTORY).getPath())));
+        files.addAll(BatchValidator.findYamlFiles(new File(classLoader.getResource(VALID_PATH_DIRECTORY).getPath())));
+        List<BatchResult> results = batchValidator.validate(files);
+        assertTrue("Batch must be invalid", BatchValidator.hasErrors(results));
+        for (int i = 0; i < files.size(); i++) {
+            BatchResult result = results.get(i);
+            assertEquals("Results must keep the input order", files.get(i), result.getFile());
+            boolean invalidFile = result.getFile().getParentFile().getName().equals("invalid");
+            assertEquals("Only files under invalid directory have errors: " + result.getFile(), invalidFile, result.getValidations().hasErrors());
+        }
+    }
+
+    @Test
+    public void testValidate_WhenStreamingToNdjsonSink_ShouldWriteOneRecordPerMessageAndFile() throws IOException {
+        List<File> files = new ArrayList<>();
+        files.addAll(BatchValidator.findYamlFiles(new File(classLoader.getResource(INVALID_PATH_DIRECTORY).getPath())));
+        files.addAll(BatchValidator.findYamlFiles(new File(classLoader.getResource(VALID_PATH_DIRECTORY).getPath())));
+        List<String> lines = new ArrayList<>();
+        JsonSink sink = new JsonSink(JsonSink.Format.NDJSON, File::getName, lines::add);
+
+        sink.begin();
+        int invalid = batchValidator.validate(files, sink);
+        sink.end(files.size(), invalid, 0);
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Integer> messages = new HashMap<>();
+        Map<String, Integer> fileRecords = new HashMap<>();
+        for (String line : lines.subList(0, lines.size() - 1)) {
+            JsonNode record = mapper.readTree(line);
+            String file = record.get("file").asText();
+            if ("message".equals(record.get("type").asText())) {
+                assertFalse("Messages of a file come before its file record", fileRecords.containsKey(file));
+                messages.merge(file, 1, Integer::sum);
+            } else {
+                assertEquals("file", record.get("type").asText());
+                fileRecords.put(file, record.get("messages").asInt());
+                assertEquals(record.get("messages").asInt() == 0, record.get("valid").asBoolean());
+            }
+        }
+        int expectedInvalid = 0;
+        for (File file : files) {
+            int expected = new YamlProcessor().isValid(file).getYamlValidationMessages().size();
+            assertEquals("Messages of " + file, expected, (int) messages.getOrDefault(file.getName(), 0));
+            assertEquals("Count of " + file, expected, (int) fileRecords.get(file.getName()));
+            expectedInvalid += expected > 0 ? 1 : 0;
+        }
+        assertEquals(expectedInvalid, invalid);
+        JsonNode summary = mapper.readTree(lines.get(lines.size() - 1));
+        assertEquals("summary", summary.get("type").asText());
+        assertEquals(files.size(), summary.get("files").asInt());
+        assertEquals(invalid, summary.get("invalid").asInt());
+    }
+
+    @Test
+    public void testValidate_WhenStreamingToJsonSink_ShouldWriteAJsonArray() throws IOException {
+        List<File> files = BatchValidator.findYamlFiles(new File(classLoader.getResource(INVALID_PATH_DIRECTORY).getPath()));
+        List<String> lines = new ArrayList<>();
+        JsonSink sink = new JsonSink(JsonSink.Format.JSON, File::getName, lines::add);
+
+        sink.begin();
+        int invalid = batchValidator.validate(files, sink);
+        sink.end(files.size(), invalid, 0);
+
+        JsonNode records = new ObjectMapper().readTree(String.join("\n", lines));
+        assertTrue(records.isArray());
+        assertEquals(lines.size() - 2, records.size());
+        assertEquals("summary", records.get(records.size() - 1).get("type").asText());
+        assertTrue("Messages carry their timing", records.get(0).has("elapsedMs"));
+    }
+}
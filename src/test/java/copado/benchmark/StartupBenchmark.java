@@ -0,0 +1,69 @@
+package copado.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to the first validation result of the one-shot CLI: the wall time of a JVM that
+ * starts, validates a YAML and exits. It runs the jar with and without the class data sharing archive
+ * built by the cds profile and fails when the archive does not keep startup under the given limit.
+ * <p>
+ * Arguments: java executable, jar, CDS archive, YAML file, runs and maximum median milliseconds with
+ * the archive (0 to only report).
+ */
+public class StartupBenchmark {
+
+    private static final File NULL_FILE = new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 6) {
+            System.err.println("Usage: StartupBenchmark <java> <jar> <archive> <yaml> <runs> <max-millis>");
+            System.exit(1);
+        }
+        String java = args[0];
+        String jar = args[1];
+        String archive = args[2];
+        String yaml = args[3];
+        int runs = Integer.parseInt(args[4]);
+        long maxMillis = Long.parseLong(args[5]);
+
+        long baseline = median(runs, Arrays.asList(java, "-Xshare:auto", "-jar", jar, "-f", yaml));
+        System.out.println("Startup without CDS archive: " + baseline + " ms (median of " + runs + " runs)");
+        if (!new File(archive).isFile()) {
+            System.out.println("CDS archive " + archive + " not found, only the baseline was measured");
+            return;
+        }
+        long shared = median(runs, Arrays.asList(java, "-XX:SharedArchiveFile=" + archive, "-Xshare:auto", "-jar", jar, "-f", yaml));
+        System.out.println("Startup with CDS archive:    " + shared + " ms (median of " + runs + " runs)");
+        if (maxMillis > 0 && shared > maxMillis) {
+            System.err.println("Startup with CDS archive is " + shared + " ms, above the limit of " + maxMillis + " ms");
+            System.exit(1);
+        }
+    }
+
+    private static long median(int runs, List<String> command) throws IOException, InterruptedException {
+        // first run warms the file system cache and is not measured
+        run(command);
+        List<Long> times = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            times.add(run(command));
+        }
+        Collections.sort(times);
+        return times.get(runs / 2);
+    }
+
+    private static long run(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(NULL_FILE)
+                .redirectError(NULL_FILE)
+                .start();
+        process.waitFor();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
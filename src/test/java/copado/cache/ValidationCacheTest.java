@@ -0,0 +1,150 @@
+package copado.cache;
+
+import copado.yaml.RegexChecker;
+import copado.yaml.YamlValidations;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class ValidationCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ClassLoader classLoader;
+
+    private final static String INVALID_REGEX_YAML = "yaml/invalid/InvalidRegexYaml.yml";
+    private final static String VALID_YAML = "yaml/valid/ValidYaml.yml";
+
+    @Before
+    public void setUp() {
+        classLoader = getClass().getClassLoader();
+    }
+
+    @Test
+    public void testIsValid_WhenFileIsUnchanged_ShouldRetrieveCachedResult() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        File yamlFile = new File(classLoader.getResource(INVALID_REGEX_YAML).getPath());
+
+        YamlValidations first = new CachedYamlProcessor(new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30)).isValid(yamlFile);
+        YamlValidations second = new CachedYamlProcessor(new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30)).isValid(yamlFile);
+
+        assertTrue("Yaml must be invalid", first.hasErrors());
+        assertEquals("Cached result must be the same as the validated one", first, second);
+        assertTrue("Result must be stored by content hash",
+                new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30).getValidations(ValidationCache.hashFile(yamlFile, "")).isPresent());
+    }
+
+    @Test
+    public void testIsValid_WhenFileIsValidated_ShouldStoreRegexVerdicts() {
+        File cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+        ValidationCache cache = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+        new CachedYamlProcessor(cache).isValid(new File(classLoader.getResource(INVALID_REGEX_YAML).getPath()));
+
+        assertEquals("Invalid regex must be cached as invalid", Optional.of(false), cache.getRegexVerdict("(?.A(*)"));
+        assertFalse("Unknown regex must not be cached", cache.getRegexVerdict("never-seen").isPresent());
+    }
+
+    @Test
+    public void testIsValid_WhenFileChanges_ShouldValidateItAgain() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        File yamlFile = temporaryFolder.newFile("Copado.yml");
+        Files.copy(new File(classLoader.getResource(VALID_YAML).getPath()).toPath(), yamlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        CachedYamlProcessor processor = new CachedYamlProcessor(new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30));
+
+        assertFalse("Yaml must be valid", processor.isValid(yamlFile).hasErrors());
+        Files.write(yamlFile.toPath(), "rules:\n".getBytes());
+        assertTrue("Changed yaml must be invalid", processor.isValid(yamlFile).hasErrors());
+    }
+
+    @Test
+    public void testGetRegexVerdict_WhenVerdictsAreFlushed_ShouldRetrieveThemFromAnotherInstance() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        ValidationCache cache = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+        cache.putRegexVerdict("a", true);
+        cache.putRegexVerdict("(", false);
+
+        assertFalse("Verdicts must wait for flush", new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30).getRegexVerdict("a").isPresent());
+        cache.flush();
+
+        ValidationCache other = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+        assertEquals(Optional.of(true), other.getRegexVerdict("a"));
+        assertEquals(Optional.of(false), other.getRegexVerdict("("));
+        assertFalse(other.getRegexVerdict("b").isPresent());
+    }
+
+    @Test
+    public void testIsValidRegex_WhenCheckedFromManyThreads_ShouldCheckEachRegexOnceAndKeepEveryVerdict() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        ValidationCache cache = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+        int regexes = RegexVerdicts.FLUSH_THRESHOLD + 1000;
+        AtomicInteger checked = new AtomicInteger();
+        RegexChecker checker = regEx -> {
+            checked.incrementAndGet();
+            return RegexChecker.COMPILE.isValid(regEx);
+        };
+
+        IntStream.range(0, regexes).parallel().forEach(i -> cache.isValidRegex(i % 7 == 0 ? "(" + i : "regex_" + i, checker));
+        IntStream.range(0, regexes).parallel().forEach(i -> cache.isValidRegex(i % 7 == 0 ? "(" + i : "regex_" + i, checker));
+        cache.flush();
+
+        assertEquals("Each regex must be checked once", regexes, checked.get());
+        ValidationCache other = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+        for (int i = 0; i < regexes; i++) {
+            assertEquals(Optional.of(i % 7 != 0), other.getRegexVerdict(i % 7 == 0 ? "(" + i : "regex_" + i));
+        }
+    }
+
+    @Test
+    public void testEvict_WhenThereAreManyVerdictSegments_ShouldMergeThem() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        for (int i = 0; i <= RegexVerdicts.MAX_SEGMENTS; i++) {
+            ValidationCache cache = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+            cache.putRegexVerdict("regex_" + i, i % 2 == 0);
+            cache.flush();
+        }
+
+        new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30).evict();
+
+        File[] segments = new File(cacheDirectory, "regex").listFiles((directory, name) -> !name.startsWith("."));
+        assertEquals("Segments must be merged into one", 1, segments.length);
+        ValidationCache cache = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+        for (int i = 0; i <= RegexVerdicts.MAX_SEGMENTS; i++) {
+            assertEquals(Optional.of(i % 2 == 0), cache.getRegexVerdict("regex_" + i));
+        }
+    }
+
+    @Test
+    public void testEvict_WhenCacheIsBiggerThanMaximum_ShouldRemoveLeastRecentlyUsedEntries() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        ValidationCache cache = new ValidationCache(cacheDirectory, Long.MAX_VALUE, 30);
+        cache.putValidations("a1", new YamlValidations());
+        cache.putValidations("b1", new YamlValidations());
+        cache.putValidations("c1", new YamlValidations());
+        cache.putValidations("d1", new YamlValidations());
+        File oldest = Files.walk(cacheDirectory.toPath())
+                .filter(path -> Files.isRegularFile(path) && path.getFileName().toString().equals("a1"))
+                .findFirst().get().toFile();
+        assertTrue(oldest.setLastModified(System.currentTimeMillis() - 60_000));
+
+        new ValidationCache(cacheDirectory, 3 * oldest.length(), 30).evict();
+
+        assertFalse("Least recently used entry must be evicted", cache.getValidations("a1").isPresent());
+        assertTrue("Recent entries must be kept", cache.getValidations("d1").isPresent());
+    }
+}
@@ -0,0 +1,103 @@
+package copado.git;
+
+import copado.yaml.YamlProcessor;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(JUnit4.class)
+public class GitValidatorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final static String VALID_YAML = "yaml/valid/ValidYaml.yml";
+    private final static String INVALID_YAML = "yaml/invalid/InvalidRegexYaml.yml";
+    // Redirect.DISCARD needs Java 9
+    private final static File NULL_FILE = new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+
+    private File repository;
+    private GitValidator gitValidator;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        Assume.assumeTrue("git must be installed", git(null, "--version") == 0);
+        repository = temporaryFolder.newFolder("repository");
+        git(repository, "init", "-q");
+        // git init -b needs git 2.28
+        git(repository, "symbolic-ref", "HEAD", "refs/heads/main");
+        commit(VALID_YAML, "valid");
+        git(repository, "branch", "release/1.0");
+        git(repository, "branch", "release/1.1");
+        commit(INVALID_YAML, "invalid");
+        git(repository, "checkout", "-q", "--orphan", "release/0.9");
+        git(repository, "rm", "-q", "-r", "--cached", ".");
+        git(repository, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "--allow-empty", "-m", "empty");
+        gitValidator = new GitValidator(new GitRepository(repository), new YamlProcessor(), 2);
+    }
+
+    @Test
+    public void testValidate_WhenRefsShareContent_ShouldValidateEachBlobOnceAndReportEveryRef() throws IOException {
+        List<RefResult> results = gitValidator.validate(Collections.singletonList("refs/heads"), Collections.singletonList("Copado.yml"));
+
+        assertEquals(4, results.size());
+        assertEquals("refs/heads/main", results.get(0).getRef());
+        assertTrue("main has the invalid YAML", results.get(0).getValidations().hasErrors());
+        assertEquals("refs/heads/release/0.9", results.get(1).getRef());
+        assertFalse("release/0.9 has no YAML", results.get(1).isFound());
+        assertNull(results.get(1).getValidations());
+        assertFalse("release/1.0 has the valid YAML", results.get(2).getValidations().hasErrors());
+        assertSame("Refs with the same blob share its validation", results.get(2).getValidations(), results.get(3).getValidations());
+    }
+
+    @Test
+    public void testValidate_WhenRangeIsGiven_ShouldValidateEveryCommit() throws IOException {
+        List<RefResult> results = gitValidator.validate(Arrays.asList("release/1.0..main", "release/1.0"),
+                Collections.singletonList("Copado.yml"));
+
+        assertEquals("Commits of the range, then the revision", 2, results.size());
+        assertEquals(40, results.get(0).getRef().length());
+        assertTrue(results.get(0).getValidations().hasErrors());
+        assertEquals("release/1.0", results.get(1).getRef());
+        assertFalse(results.get(1).getValidations().hasErrors());
+    }
+
+    private void commit(final String resource, final String message) throws IOException, InterruptedException {
+        Files.copy(Paths.get(getClass().getClassLoader().getResource(resource).getPath()), repository.toPath().resolve("Copado.yml"),
+                StandardCopyOption.REPLACE_EXISTING);
+        git(repository, "add", "Copado.yml");
+        git(repository, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", message);
+    }
+
+    private static int git(final File directory, final String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            return new ProcessBuilder(command).directory(directory)
+                    .redirectOutput(ProcessBuilder.Redirect.to(NULL_FILE))
+                    .redirectError(ProcessBuilder.Redirect.to(NULL_FILE))
+                    .start().waitFor();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package copado.metrics;
+
+import copado.yaml.RegexAnalyzer;
+import copado.yaml.RegexChecker;
+import copado.yaml.YamlProcessor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ValidationMetricsTest {
+
+    private final static String VALID_YAML = "yaml/valid/ValidYaml.yml";
+
+    @Test
+    public void testIsValid_WhenMetricsAreGiven_ShouldCountEveryPhase() {
+        File yamlFile = new File(getClass().getClassLoader().getResource(VALID_YAML).getPath());
+        ValidationMetrics metrics = new ValidationMetrics(3);
+        YamlProcessor yamlProcessor = new YamlProcessor(RegexChecker.COMPILE, RegexAnalyzer.NONE, metrics);
+
+        assertFalse(yamlProcessor.isValid(yamlFile).hasErrors());
+        assertFalse(yamlProcessor.isValid(yamlFile).hasErrors());
+
+        assertEquals(2, metrics.getFiles());
+        assertEquals(2 * yamlFile.length(), metrics.getBytesRead());
+        assertEquals(2 * 11, metrics.getRegexes());
+        assertEquals(2 * 4, metrics.getRules());
+        assertTrue("Expanded expressions are compiled", metrics.getExpandedRegexes() > 0);
+        assertTrue(metrics.getNanos(ValidationMetrics.Phase.REGEX_COMPILE) > 0);
+        assertTrue(metrics.getNanos(ValidationMetrics.Phase.PARSE) > 0);
+        List<RegexTiming> slowest = metrics.getSlowest();
+        assertEquals(3, slowest.size());
+        assertTrue("Slowest first", slowest.get(0).getNanos() >= slowest.get(2).getNanos());
+
+        metrics.reset();
+        assertEquals(0, metrics.getFiles());
+        assertTrue(metrics.getSlowest().isEmpty());
+    }
+
+    @Test
+    public void testIsValid_WhenNoMetricsAreGiven_ShouldRecordNothing() {
+        File yamlFile = new File(getClass().getClassLoader().getResource(VALID_YAML).getPath());
+
+        new YamlProcessor().isValid(yamlFile);
+
+        assertEquals(0, ValidationMetrics.NONE.getFiles());
+        assertEquals(0, ValidationMetrics.NONE.getRegexes());
+        assertEquals(0, ValidationMetrics.NONE.start());
+    }
+
+    @Test
+    public void testRegister_WhenMetricsArePublished_ShouldReadThemThroughJmx() throws Exception {
+        ValidationMetrics metrics = new ValidationMetrics();
+        metrics.ruleChecked(metrics.start());
+        ObjectName name = metrics.register("test");
+        try {
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Rules"));
+            ManagementFactory.getPlatformMBeanServer().invoke(name, "reset", null, null);
+            assertEquals(0L, metrics.getRules());
+        } finally {
+            ValidationMetrics.unregister(name);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
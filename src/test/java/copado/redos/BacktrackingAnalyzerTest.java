@@ -0,0 +1,65 @@
+package copado.redos;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class BacktrackingAnalyzerTest {
+
+    private final static String FIELD_REGEX = "(?s)(.[^\\n]+<fields>(?:(?!<fields>).)*?<fullName>___REPLACEVALUE___</fullName>(?:(?!<fields>).)*?</fields>)";
+    private final static String SIMPLE_TAG_REGEX = "(<___REPLACEVALUE___>[\\s\\S]*</___REPLACEVALUE___>)";
+
+    @Test
+    public void testFindNestedQuantifier_WhenQuantifiedGroupContainsQuantifier_ShouldRetrievePosition() {
+        assertEquals(OptionalInt.of(4), BacktrackingAnalyzer.findNestedQuantifier("(a+)+b"));
+        assertEquals(OptionalInt.of(8), BacktrackingAnalyzer.findNestedQuantifier("(\\w+\\s?)*$"));
+    }
+
+    @Test
+    public void testFindNestedQuantifier_WhenQuantifiersDoNotNest_ShouldRetrieveEmpty() {
+        assertFalse(BacktrackingAnalyzer.findNestedQuantifier(FIELD_REGEX).isPresent());
+        assertFalse(BacktrackingAnalyzer.findNestedQuantifier(SIMPLE_TAG_REGEX).isPresent());
+        assertFalse("Possessive quantifiers do not backtrack", BacktrackingAnalyzer.findNestedQuantifier("(a++)+b").isPresent());
+        assertFalse("Atomic groups do not backtrack", BacktrackingAnalyzer.findNestedQuantifier("((?>a+))+b").isPresent());
+        assertFalse("Quantifiers inside character classes are literals", BacktrackingAnalyzer.findNestedQuantifier("([a+*])+b").isPresent());
+    }
+
+    @Test
+    public void testAnalyze_WhenMatchingStepsAreQuadratic_ShouldRetrieveMessage() {
+        Optional<String> message = new BacktrackingAnalyzer(60000).analyze("(?s)<fields>.*?</missing>");
+        assertTrue("Quadratic regex must be reported", message.isPresent());
+        assertTrue(message.get(), message.get().startsWith("Regular expression matching steps grow super-linearly"));
+    }
+
+    @Test
+    public void testAnalyze_WhenSmallestInputDoesNotFinishInBudget_ShouldRetrieveMessage() {
+        Optional<String> message = new BacktrackingAnalyzer(0).analyze(FIELD_REGEX);
+        assertTrue("An expression that finishes no input can not be reported as clean", message.isPresent());
+        assertTrue(message.get(), message.get().startsWith("Regular expression did not finish matching the smallest input"));
+    }
+
+    @Test
+    public void testAnalyze_WhenGroupWithAlternativesRepeatsOverWholeFile_ShouldReportStackOverflow() {
+        Optional<String> message = new BacktrackingAnalyzer(2000).analyze("(?s)(<fields>(?:.|\\s)*</fields>)");
+        assertTrue("Overflowing the matcher stack must be reported, not thrown", message.isPresent());
+    }
+
+    @Test
+    public void testAnalyze_WhenAlternativesInLoopBacktrackExponentially_ShouldRetrieveMessage() {
+        assertTrue(new BacktrackingAnalyzer(500).analyze("(?s)<fields>(.|\\s)*</missing>").isPresent());
+        assertTrue(new BacktrackingAnalyzer(500).analyze("(?s)(<fields>(?:.|\\n)*?</missing>)").isPresent());
+    }
+
+    @Test
+    public void testAnalyze_WhenRegexIsCanonicalCopadoPattern_ShouldRetrieveEmpty() {
+        assertFalse(new BacktrackingAnalyzer(5000).analyze(FIELD_REGEX).isPresent());
+    }
+}
@@ -0,0 +1,95 @@
+package copado.rules;
+
+import copado.yaml.CopadoYamlRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class PatternPrefilterTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final static String FIELD_TEMPLATE = "(?s)(<fields>(?:(?!<fields>).)*?<fullName>___REPLACEVALUE___</fullName>(?:(?!<fields>).)*?</fields>)";
+
+    @Test
+    public void testRequiredLiteral_WhenPatternHasRequiredText_ShouldRetrieveLongestOne() {
+        assertEquals("<fullName>Jigsaw</fullName>", RequiredLiteral.of(ReplacementRule.expand(FIELD_TEMPLATE, "Jigsaw")));
+        assertEquals("<userPermissions>", RequiredLiteral.of("<userPermissions>\\s*<enabled>(true|false)"));
+        assertEquals("a.b(c", RequiredLiteral.of("\\Qa.b(c\\E\\d+"));
+        assertEquals("<name>", RequiredLiteral.of("x?<name>y*"));
+        assertEquals("<tag>", RequiredLiteral.of("<tag>+body"));
+    }
+
+    @Test
+    public void testRequiredLiteral_WhenTextIsNotRequired_ShouldRetrieveNull() {
+        assertNull("Alternatives", RequiredLiteral.of("<fields>|<layouts>"));
+        assertNull("Optional group", RequiredLiteral.of("(<fields>)?\\w+"));
+        assertNull("Lookahead", RequiredLiteral.of("(?=<fields>)\\w+"));
+        assertNull("Case insensitive", RequiredLiteral.of("(?i)<fields>"));
+        assertNull("Too short", RequiredLiteral.of("ab[c]"));
+        assertNull("Character classes", RequiredLiteral.of("[<fields>]+\\w\\d"));
+    }
+
+    @Test
+    public void testScan_WhenLiteralsOverlap_ShouldFindEveryOne() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers", "\u00f1and\u00fa"));
+        BitSet found = new BitSet();
+
+        automaton.scan("ushers, \u00f1and\u00fa", found);
+
+        assertEquals(BitSet.valueOf(new long[]{0b11011}), found);
+    }
+
+    @Test
+    public void testApply_WhenPrefilterIsUsed_ShouldMakeSameChangesAsRunningEveryPattern() throws IOException {
+        List<ReplacementRule> rules = new ArrayList<>();
+        rules.add(rule("rename", FIELD_TEMPLATE, Arrays.asList("Old__c", "Jigsaw", "Missing__c"), "<fields><fullName>Added__c</fullName></fields>"));
+        // only matches after the first rule added the field
+        rules.add(rule("added", FIELD_TEMPLATE, Collections.singletonList("Added__c"), ""));
+        rules.add(rule("no_literal", "(?i)<description>.*?</description>", Collections.singletonList(null), ""));
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Path file = temporaryFolder.newFile("Object" + i + ".object").toPath();
+            StringBuilder content = new StringBuilder("<CustomObject>\n");
+            for (int f = 0; f < 50; f++) {
+                String name = f == i ? "Old__c" : f == 2 * i ? "Jigsaw" : "Field" + f + "__c";
+                content.append("    <fields>\n        <fullName>").append(name).append("</fullName>\n    </fields>\n");
+            }
+            if (i % 3 == 0) {
+                content.append("    <DESCRIPTION>text</DESCRIPTION>\n");
+            }
+            Files.write(file, content.append("</CustomObject>\n").toString().getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+
+        List<FileChange> expected = new RuleEngine(rules, 2, false).apply(files, null, false);
+        List<FileChange> changes = new RuleEngine(rules, 2, true).apply(files, null, false);
+
+        assertEquals(20, expected.size());
+        assertEquals(expected, changes);
+    }
+
+    private static ReplacementRule rule(String name, String template, List<String> values, String replaceWith) {
+        CopadoYamlRule rule = new CopadoYamlRule();
+        rule.setExtensions(Collections.singletonList("object"));
+        rule.setReplace_values(values.get(0) == null ? null : values);
+        rule.setReplace_with(replaceWith);
+        return ReplacementRule.of(name, rule, template);
+    }
+}
@@ -0,0 +1,92 @@
+package copado.rules;
+
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidations;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class RuleEngineTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final static String VALID_YAML_WITH_BRANCHES = "yaml/valid/ValidYamlWithBranches.yml";
+    private final static String ACCOUNT_OBJECT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<CustomObject>\n"
+            + "    <fields>\n"
+            + "        <fullName>Jigsaw</fullName>\n"
+            + "    </fields>\n"
+            + "    <fields>\n"
+            + "        <fullName>Name</fullName>\n"
+            + "    </fields>\n"
+            + "</CustomObject>\n";
+
+    private List<ReplacementRule> rules;
+    private Path accountObject;
+
+    @Before
+    public void setUp() throws IOException {
+        File yamlFile = new File(getClass().getClassLoader().getResource(VALID_YAML_WITH_BRANCHES).getPath());
+        rules = ReplacementRule.of(new YamlProcessor().parseYamlFile(yamlFile));
+        accountObject = temporaryFolder.newFile("Account.object").toPath();
+        Files.write(accountObject, ACCOUNT_OBJECT.getBytes(StandardCharsets.UTF_8));
+        Files.write(temporaryFolder.newFile("Contact.object").toPath(), ACCOUNT_OBJECT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testApply_WhenDryRun_ShouldReportReplacementsWithoutWriting() throws IOException {
+        List<FileChange> changes = new RuleEngine(rules, 2).apply(MetadataFiles.find(temporaryFolder.getRoot().toPath()), "master", false);
+
+        assertEquals("Only Account.object is selected by file_names", 1, changes.size());
+        FileChange change = changes.get(0);
+        assertEquals(accountObject, change.getFile());
+        assertEquals("Only Jigsaw field must match", 1, change.getReplacements().size());
+        assertEquals("invalid_fields", change.getReplacements().get(0).getRule());
+        assertEquals("Jigsaw", change.getReplacements().get(0).getReplaceValue());
+        assertEquals(2, change.getReplacements().get(0).getLine());
+        assertTrue("Diff must show the removed field", change.toDiff().contains("-        <fullName>Jigsaw</fullName>"));
+        assertEquals("File must not be written", ACCOUNT_OBJECT, new String(Files.readAllBytes(accountObject), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testApply_WhenWriting_ShouldRewriteFileInPlace() throws IOException {
+        new RuleEngine(rules, 2).apply(MetadataFiles.find(temporaryFolder.getRoot().toPath()), "dev", true);
+
+        String content = new String(Files.readAllBytes(accountObject), StandardCharsets.UTF_8);
+        assertFalse("Jigsaw field must be removed", content.contains("Jigsaw"));
+        assertTrue("Other fields must be kept", content.contains("<fullName>Name</fullName>"));
+    }
+
+    @Test
+    public void testApply_WhenBranchIsNotListed_ShouldNotApplyRule() throws IOException {
+        List<FileChange> changes = new RuleEngine(rules, 2).apply(MetadataFiles.find(temporaryFolder.getRoot().toPath()), "uat", false);
+
+        assertTrue("Rule limited to master and dev must not apply on uat", changes.isEmpty());
+    }
+
+    @Test
+    public void testOf_WhenBuiltFromCompactModel_ShouldMatchObjectModel() {
+        File yamlFile = new File(getClass().getClassLoader().getResource(VALID_YAML_WITH_BRANCHES).getPath());
+        YamlValidations validations = new YamlValidations();
+
+        List<ReplacementRule> compactRules = ReplacementRule.of(new YamlProcessor().load(yamlFile, validations));
+
+        assertFalse("Yaml must be valid", validations.hasErrors());
+        assertEquals(rules, compactRules);
+    }
+}
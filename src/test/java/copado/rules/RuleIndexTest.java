@@ -0,0 +1,61 @@
+package copado.rules;
+
+import copado.yaml.CopadoYamlRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class RuleIndexTest {
+
+    private static final String[] FILE_NAMES = {"Account.object", "Contact.object", "Admin.profile", "Case.layout", "README"};
+    private static final String[] BRANCHES = {null, "master", "dev", "uat"};
+
+    @Test
+    public void testRulesFor_WhenRulesSelectByNameAndExtension_ShouldMatchLinearScanInDefinitionOrder() {
+        List<ReplacementRule> rules = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            CopadoYamlRule rule = new CopadoYamlRule();
+            if (i % 3 == 0) {
+                rule.setFile_names(Collections.singletonList(FILE_NAMES[i % FILE_NAMES.length]));
+            } else {
+                rule.setExtensions(Arrays.asList("object", "profile", "layout").subList(i % 3, 3));
+            }
+            if (i % 4 == 1) {
+                rule.setBranches(Collections.singletonList("master"));
+            } else if (i % 4 == 2) {
+                rule.setExclusion_branches(Arrays.asList("dev", "uat"));
+            }
+            rules.add(ReplacementRule.of("rule_" + i, rule, "<fields>"));
+        }
+        RuleIndex index = new RuleIndex(rules);
+
+        for (String fileName : FILE_NAMES) {
+            for (String branch : BRANCHES) {
+                List<ReplacementRule> expected = rules.stream()
+                        .filter(rule -> rule.appliesToFile(fileName) && rule.appliesToBranch(branch))
+                        .collect(Collectors.toList());
+                assertEquals("Rules for " + fileName + " on " + branch, expected, index.rulesFor(fileName, branch));
+            }
+        }
+    }
+
+    @Test
+    public void testRulesFor_WhenTemplateIsSelected_ShouldNotCompilePatterns() {
+        CopadoYamlRule rule = new CopadoYamlRule();
+        rule.setExtensions(Collections.singletonList("object"));
+        ReplacementRule broken = ReplacementRule.of("broken", rule, "(?.A(*)");
+
+        List<ReplacementRule> selected = new RuleIndex(Collections.singletonList(broken)).rulesFor("Account.object", "master");
+
+        assertEquals(Collections.singletonList(broken), selected);
+    }
+}
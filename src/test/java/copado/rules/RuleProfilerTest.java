@@ -0,0 +1,125 @@
+package copado.rules;
+
+import copado.yaml.YamlProcessor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class RuleProfilerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final static String VALID_YAML_WITH_BRANCHES = "yaml/valid/ValidYamlWithBranches.yml";
+    private final static String ACCOUNT_OBJECT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<CustomObject>\n"
+            + "    <fields>\n"
+            + "        <fullName>Jigsaw</fullName>\n"
+            + "    </fields>\n"
+            + "    <fields>\n"
+            + "        <fullName>SicDesc</fullName>\n"
+            + "    </fields>\n"
+            + "    <fields>\n"
+            + "        <fullName>Name</fullName>\n"
+            + "    </fields>\n"
+            + "</CustomObject>\n";
+
+    private List<ReplacementRule> rules;
+    private Path accountObject;
+
+    @Before
+    public void setUp() throws IOException {
+        File yamlFile = new File(getClass().getClassLoader().getResource(VALID_YAML_WITH_BRANCHES).getPath());
+        rules = ReplacementRule.of(new YamlProcessor().parseYamlFile(yamlFile));
+        accountObject = temporaryFolder.newFile("Account.object").toPath();
+        Files.write(accountObject, ACCOUNT_OBJECT.getBytes(StandardCharsets.UTF_8));
+        Files.write(temporaryFolder.newFile("Admin.profile").toPath(), "<Profile/>\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testProfile_WhenRulesSelectSampleFiles_ShouldReportEveryRuleInOrder() throws IOException {
+        List<RuleProfile> profiles = new RuleProfiler(rules, 1, 3)
+                .profile(MetadataFiles.find(temporaryFolder.getRoot().toPath()), null);
+
+        assertEquals(3, profiles.size());
+        RuleProfile fields = profiles.get(0);
+        assertEquals("invalid_fields", fields.getRule());
+        assertEquals(1, fields.getFiles());
+        assertEquals(ACCOUNT_OBJECT.length(), fields.getCharacters());
+        assertEquals("Both replace values match once", 2, fields.getMatches());
+        assertEquals(3, fields.getRuns());
+        assertEquals(accountObject, fields.getWorstFile());
+        assertTrue("Worst run can not take longer than all of them", fields.getWorstNanos() <= fields.getNanos());
+        assertTrue(fields.getThroughput() > 0);
+
+        RuleProfile permissions = profiles.get(1);
+        assertEquals("invalid_user_permissions", permissions.getRule());
+        assertEquals(1, permissions.getFiles());
+        assertEquals(0, permissions.getMatches());
+
+        RuleProfile layouts = profiles.get(2);
+        assertEquals("No layout in the samples", 0, layouts.getFiles());
+        assertNull(layouts.getWorstFile());
+        assertTrue(Double.isNaN(layouts.getThroughput()));
+    }
+
+    @Test
+    public void testProfile_WhenBranchExcludesRule_ShouldNotRunIt() throws IOException {
+        List<RuleProfile> profiles = new RuleProfiler(rules, 0, 1)
+                .profile(MetadataFiles.find(temporaryFolder.getRoot().toPath()), "uat");
+
+        assertEquals("Rule limited to master and dev must not run on uat", 0, profiles.get(0).getFiles());
+        assertEquals(1, profiles.get(1).getFiles());
+    }
+
+    @Test
+    public void testProfile_WhenRuleBacktracksCatastrophically_ShouldReportItTimedOut() throws IOException {
+        char[] letters = new char[64];
+        Arrays.fill(letters, 'a');
+        Path slowFile = temporaryFolder.newFile("Slow.object").toPath();
+        Files.write(slowFile, new String(letters).getBytes(StandardCharsets.UTF_8));
+        ReplacementRule catastrophic = new ReplacementRule("catastrophic", Collections.singletonList(null), "(a+)+b", "",
+                Collections.singleton("Slow.object"), Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+
+        List<RuleProfile> profiles = new RuleProfiler(Collections.singletonList(catastrophic), 0, 1, 100)
+                .profile(MetadataFiles.find(temporaryFolder.getRoot().toPath()), null);
+
+        assertEquals("Run must be stopped at the timeout", RuleProfile.Failure.TIMEOUT, profiles.get(0).getFailure());
+        assertEquals(slowFile, profiles.get(0).getWorstFile());
+        assertEquals(0, profiles.get(0).getThroughput(), 0);
+    }
+
+    @Test
+    public void testProfile_WhenRuleOverflowsTheStack_ShouldReportItFailedOnTheFile() throws IOException {
+        StringBuilder fields = new StringBuilder("<CustomObject>\n<fields>\n");
+        for (int i = 0; i < 20000; i++) {
+            fields.append("    <label>Field ").append(i).append("</label>\n");
+        }
+        Path largeFile = temporaryFolder.newFile("Large.object").toPath();
+        Files.write(largeFile, fields.append("</fields>\n</CustomObject>\n").toString().getBytes(StandardCharsets.UTF_8));
+        ReplacementRule recursive = new ReplacementRule("recursive", Collections.singletonList(null), "(?s)(<fields>(?:.|\\s)*</fields>)", "",
+                Collections.singleton("Large.object"), Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+
+        List<RuleProfile> profiles = new RuleProfiler(Collections.singletonList(recursive), 0, 1)
+                .profile(MetadataFiles.find(temporaryFolder.getRoot().toPath()), null);
+
+        assertEquals(RuleProfile.Failure.STACK_OVERFLOW, profiles.get(0).getFailure());
+        assertEquals(largeFile, profiles.get(0).getWorstFile());
+    }
+}
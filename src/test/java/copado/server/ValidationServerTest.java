@@ -0,0 +1,163 @@
+package copado.server;
+
+import copado.Cli;
+import copado.Log;
+import copado.yaml.YamlProcessor;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class ValidationServerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ValidationServer server;
+    private Path tokenFile;
+    private String resourcesDirectory;
+
+    private final static String MULTIPLE_ERRORS = "yaml/invalid/MultipleErrors.yml";
+    private final static String VALID_YAML_WITH_BRANCHES = "yaml/valid/ValidYamlWithBranches.yml";
+
+    @Before
+    public void setUp() throws IOException {
+        tokenFile = temporaryFolder.getRoot().toPath().resolve("daemon.token");
+        server = new ValidationServer(0, 2, tokenFile);
+        new Thread(server::serve).start();
+        resourcesDirectory = new File(getClass().getClassLoader().getResource("yaml").getPath()).getParent();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testRun_WhenDaemonIsRunning_ShouldMatchInProcessOutputAndExitCode() throws UnsupportedEncodingException {
+        String[] args = {"-f", MULTIPLE_ERRORS, "-d", "yaml/valid"};
+        ByteArrayOutputStream daemonOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream daemonErr = new ByteArrayOutputStream();
+        ByteArrayOutputStream localOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream localErr = new ByteArrayOutputStream();
+
+        OptionalInt daemonExitCode = new DaemonClient(server.getPort(), tokenFile)
+                .run(args, resourcesDirectory, new ByteArrayInputStream(new byte[0]), new PrintStream(daemonOut, true), new PrintStream(daemonErr, true));
+        int localExitCode = new Cli(new Log(new PrintStream(localOut, true), new PrintStream(localErr, true)),
+                new ByteArrayInputStream(new byte[0]), new File(resourcesDirectory), new YamlProcessor()).run(args);
+
+        assertEquals("Daemon must answer", OptionalInt.of(localExitCode), daemonExitCode);
+        assertEquals("Exit code must show invalid files", 1, localExitCode);
+        assertEquals(localOut.toString("UTF-8"), daemonOut.toString("UTF-8"));
+        assertEquals(localErr.toString("UTF-8"), daemonErr.toString("UTF-8"));
+    }
+
+    @Test
+    public void testRun_WhenCommandIsPlan_ShouldForwardStdinAndMatchInProcessOutput() throws UnsupportedEncodingException {
+        String[] args = {"plan", "-f", VALID_YAML_WITH_BRANCHES, "--branch", "dev"};
+        byte[] changedPaths = "force-app/main/default/objects/Account.object\nforce-app/main/default/classes/A.cls\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream daemonOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream localOut = new ByteArrayOutputStream();
+
+        OptionalInt daemonExitCode = new DaemonClient(server.getPort(), tokenFile)
+                .run(args, resourcesDirectory, new ByteArrayInputStream(changedPaths), new PrintStream(daemonOut, true), System.err);
+        int localExitCode = new Cli(new Log(new PrintStream(localOut, true), System.err),
+                new ByteArrayInputStream(changedPaths), new File(resourcesDirectory), new YamlProcessor()).run(args);
+
+        assertEquals("Daemon must answer", OptionalInt.of(localExitCode), daemonExitCode);
+        assertTrue("Plan must see the changed paths, output was " + localOut, localOut.toString("UTF-8").contains("of 2 files"));
+        assertEquals(localOut.toString("UTF-8"), daemonOut.toString("UTF-8"));
+    }
+
+    @Test
+    public void testRun_WhenNoDaemonIsRunning_ShouldRetrieveEmpty() throws IOException {
+        int port = server.getPort();
+        server.close();
+
+        OptionalInt exitCode = new DaemonClient(port, tokenFile)
+                .run(new String[]{"-f", MULTIPLE_ERRORS}, resourcesDirectory, new ByteArrayInputStream(new byte[0]), System.out, System.err);
+
+        assertFalse("Client must fall back to in process validation", exitCode.isPresent());
+    }
+
+    @Test
+    public void testRun_WhenTokenDoesNotMatch_ShouldBeRefused() throws IOException {
+        Path otherToken = temporaryFolder.newFile("other.token").toPath();
+        Files.write(otherToken, "not-the-token".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream daemonOut = new ByteArrayOutputStream();
+
+        OptionalInt exitCode = new DaemonClient(server.getPort(), otherToken)
+                .run(new String[]{"-f", MULTIPLE_ERRORS}, resourcesDirectory, new ByteArrayInputStream(new byte[0]),
+                        new PrintStream(daemonOut, true), System.err);
+
+        assertFalse("Daemon must not run a request without its token", exitCode.isPresent());
+        assertEquals("", daemonOut.toString("UTF-8"));
+    }
+
+    @Test
+    public void testServer_WhenRequestHasNoArguments_ShouldBeRefused() throws IOException {
+        String token = new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8);
+
+        List<String> response = send("{\"version\":" + DaemonProtocol.VERSION + ",\"token\":\"" + token + "\"}");
+
+        assertEquals(Collections.singletonList(DaemonProtocol.REFUSED + "request has no arguments or working directory"), response);
+    }
+
+    @Test
+    public void testServer_WhenRequestIsNotJson_ShouldBeRefused() throws IOException {
+        List<String> response = send("-f Copado.yml");
+
+        assertEquals(1, response.size());
+        assertTrue("Daemon must refuse a request it can not read", response.get(0).startsWith(DaemonProtocol.REFUSED));
+    }
+
+    @Test
+    public void testServer_WhenStarted_ShouldWriteTokenReadableByOwnerOnly() throws IOException {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+    }
+
+    private List<String> send(final String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            OutputStream output = socket.getOutputStream();
+            output.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            List<String> lines = new ArrayList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package copado.watch;
+
+import copado.yaml.CopadoYaml;
+import copado.yaml.CopadoYamlRule;
+import copado.yaml.YamlProcessor;
+import copado.yaml.YamlValidations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class IncrementalValidatorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final static String MULTIPLE_ERRORS_YAML = "yaml/invalid/MultipleErrors.yml";
+
+    private final IncrementalValidator validator = new IncrementalValidator(new YamlProcessor());
+
+    @Test
+    public void testValidate_WhenFirstVersion_ShouldReportSameMessagesAsFullValidation() {
+        File yamlFile = new File(getClass().getClassLoader().getResource(MULTIPLE_ERRORS_YAML).getPath());
+
+        WatchResult result = validator.validate(yamlFile);
+
+        assertEquals(2, result.getCheckedRegexes());
+        assertEquals(3, result.getCheckedRules());
+        assertEquals("Messages must have the line and column of a full validation",
+                new YamlProcessor().isValid(yamlFile).getYamlValidationMessages(), result.getValidations().getYamlValidationMessages());
+    }
+
+    @Test
+    public void testValidate_WhenEntriesOnlyMove_ShouldReportThemAtTheirNewLine() throws IOException {
+        File yamlFile = temporaryFolder.newFile("Copado.yml");
+        String content = "regex_lib:\n    regex_1: '<fields>'\nrules:\n    rule_1:\n        regex_name: 'regex_1'\n        extensions:\n            - obj$ect\n";
+        Files.write(yamlFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        validator.validate(yamlFile);
+
+        Files.write(yamlFile.toPath(), ("# moved down\n" + content).getBytes(StandardCharsets.UTF_8));
+        WatchResult result = validator.validate(yamlFile);
+
+        assertEquals(0, result.getCheckedRules());
+        assertEquals(new YamlProcessor().isValid(yamlFile).getYamlValidationMessages(), result.getValidations().getYamlValidationMessages());
+        assertEquals(Integer.valueOf(5), result.getValidations().getYamlValidationMessages().get(0).getLine());
+    }
+
+    @Test
+    public void testValidate_WhenOneRuleChanges_ShouldCheckOnlyThatRule() {
+        CopadoYaml yaml = yaml(100);
+        validator.validate(yaml);
+
+        yaml.getRules().get("rule_7").setExtensions(Collections.singletonList("obj$ect"));
+        WatchResult result = validator.validate(yaml);
+
+        assertEquals(0, result.getCheckedRegexes());
+        assertEquals(1, result.getCheckedRules());
+        assertEquals(100, result.getTotalRules());
+        assertEquals(Collections.singletonList("rule_7: Extensions must be a string without symbols: obj$ect"),
+                describe(result.getValidations()));
+    }
+
+    @Test
+    public void testValidate_WhenRegexIsRemoved_ShouldCheckDependentRules() {
+        CopadoYaml yaml = yaml(100);
+        validator.validate(yaml);
+
+        yaml.getRegex_lib().remove("regex_3");
+        WatchResult result = validator.validate(yaml);
+
+        assertEquals(0, result.getCheckedRegexes());
+        assertEquals("Rules pointing to regex_3 must be checked again", 10, result.getCheckedRules());
+        assertEquals(10, result.getValidations().getYamlValidationMessages().size());
+        assertTrue(result.getValidations().getYamlValidationMessages().stream()
+                .allMatch(message -> message.getMessage().equals("Regular expression name in this rule was not found")));
+    }
+
+    @Test
+    public void testValidate_WhenRegexChanges_ShouldKeepResultsOfOtherEntries() {
+        CopadoYaml yaml = yaml(100);
+        yaml.getRegex_lib().put("regex_5", "(?.A(*)");
+        validator.validate(yaml);
+
+        yaml.getRegex_lib().put("regex_5", "<fields>");
+        yaml.getRegex_lib().put("regex_6", "(?.A(*)");
+        WatchResult result = validator.validate(yaml);
+
+        assertEquals(2, result.getCheckedRegexes());
+        assertEquals(20, result.getCheckedRules());
+        assertEquals(Collections.singletonList("regex_6: Regular Expression is not valid"), describe(result.getValidations()));
+    }
+
+    @Test(timeout = 10000)
+    public void testWatch_WhenFileIsSaved_ShouldRunAction() throws IOException, InterruptedException {
+        File yamlFile = temporaryFolder.newFile("Copado.yml");
+        CountDownLatch saved = new CountDownLatch(1);
+        YamlWatcher watcher = new YamlWatcher(yamlFile);
+        Thread watching = new Thread(() -> {
+            try {
+                watcher.watch(saved::countDown);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        watching.start();
+        try {
+            while (!saved.await(200, TimeUnit.MILLISECONDS)) {
+                Files.write(yamlFile.toPath(), "regex_lib:\n".getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            // closing the watcher ends the watch loop
+            watcher.close();
+            watching.join();
+        }
+    }
+
+    private static CopadoYaml yaml(int ruleCount) {
+        Map<String, String> regexLib = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            regexLib.put("regex_" + i, "<fields>" + i);
+        }
+        Map<String, CopadoYamlRule> rules = new LinkedHashMap<>();
+        for (int i = 0; i < ruleCount; i++) {
+            CopadoYamlRule rule = new CopadoYamlRule();
+            rule.setRegex_name("regex_" + i % 10);
+            rule.setExtensions(Collections.singletonList("object"));
+            rules.put("rule_" + i, rule);
+        }
+        CopadoYaml yaml = new CopadoYaml();
+        yaml.setRegex_lib(regexLib);
+        yaml.setRules(rules);
+        return yaml;
+    }
+
+    private static List<String> describe(YamlValidations validations) {
+        return validations.getYamlValidationMessages().stream()
+                .map(message -> message.getNode() + ": " + message.getMessage())
+                .collect(Collectors.toList());
+    }
+}
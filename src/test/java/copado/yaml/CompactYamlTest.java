@@ -0,0 +1,80 @@
+package copado.yaml;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.TestCase.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(JUnit4.class)
+public class CompactYamlTest {
+
+    private final static String VALID_YAML = "yaml/valid/ValidYaml.yml";
+
+    @Test
+    public void testLoad_WhenRulesRepeatLists_ShouldShareOneInstance() {
+        File yamlFile = new File(getClass().getClassLoader().getResource(VALID_YAML).getPath());
+        YamlValidations validations = new YamlValidations();
+
+        CompactYaml yaml = new YamlProcessor().load(yamlFile, validations);
+
+        assertFalse("Yaml must be valid", validations.hasErrors());
+        assertEquals(11, yaml.getRegexCount());
+        assertEquals(4, yaml.getRuleCount());
+        assertEquals("invalid_user_permissions", yaml.getRuleName(1));
+        assertEquals(yaml.indexOfRegex("user-permission"), yaml.getRegexIndex(1));
+        assertEquals(Arrays.asList("ActivateOrder", "ManageSandboxes", "EditBillingInfo", "ManageRealm"), yaml.getReplaceValues(1));
+        assertSame("Rules with the same extensions share the set", yaml.getExtensions(1), yaml.getExtensions(2));
+        assertNull(yaml.getFileNames(1));
+        assertNull(yaml.getBranches(1));
+    }
+
+    @Test
+    public void testBuild_WhenRuleIsAddedBeforeItsRegex_ShouldResolveItsIndex() {
+        CompactYaml.Builder builder = new CompactYaml.Builder();
+        CopadoYamlRule rule = new CopadoYamlRule();
+        rule.setRegex_name("field");
+        rule.setExtensions(Collections.singletonList("object"));
+        CopadoYamlRule missing = new CopadoYamlRule();
+        missing.setRegex_name("missing");
+        builder.addRule("early", rule);
+        builder.addRule("missing_regex", missing);
+        builder.addRule("empty", null);
+        builder.addRegex("field", "<fields>");
+
+        CompactYaml yaml = builder.build();
+
+        assertEquals("<fields>", yaml.getTemplate(0));
+        assertEquals(CompactYaml.NO_REGEX, yaml.getRegexIndex(1));
+        assertNull(yaml.getTemplate(2));
+        assertEquals(Collections.singleton("object"), yaml.getExtensions(0));
+    }
+
+    @Test
+    public void testBuild_WhenRuleNameRepeats_ShouldKeepLastDefinitionInFirstPosition() {
+        CompactYaml.Builder builder = new CompactYaml.Builder();
+        CopadoYamlRule first = new CopadoYamlRule();
+        first.setRegex_name("field");
+        first.setReplace_values(Collections.singletonList("One"));
+        CopadoYamlRule second = new CopadoYamlRule();
+        second.setRegex_name("field");
+        second.setReplace_values(Collections.singletonList("Two"));
+        builder.addRule("x", first);
+        builder.addRule("y", null);
+        builder.addRule("x", second);
+
+        CompactYaml yaml = builder.build();
+
+        assertEquals("Same rules as mapping the YAML into a map", 2, yaml.getRuleCount());
+        assertEquals("x", yaml.getRuleName(0));
+        assertEquals(Collections.singletonList("Two"), yaml.getReplaceValues(0));
+        assertEquals("y", yaml.getRuleName(1));
+    }
+}
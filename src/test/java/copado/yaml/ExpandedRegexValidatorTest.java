@@ -0,0 +1,71 @@
+package copado.yaml;
+
+import copado.metrics.ValidationMetrics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class ExpandedRegexValidatorTest {
+
+    private static final String TEMPLATE = "<fullName>___REPLACEVALUE___</fullName>";
+
+    @Test
+    public void testValidate_WhenRulesSpanManyChunks_ShouldReportInvalidExpansionsInOrder() {
+        int rules = ExpandedRegexValidator.CHUNK_SIZE * (ExpandedRegexValidator.MAX_CHUNKS_IN_FLIGHT + 4);
+        ExpandedRegexValidator validator = new ExpandedRegexValidator();
+        for (int i = 0; i < rules; i++) {
+            String value = i % 1000 == 0 ? "Broken_" + i + "(" : "Field_" + i;
+            validator.add("rule_" + i, TEMPLATE, Collections.singletonList(value), i, 1);
+        }
+
+        List<YamlValidationMessage> messages = validator.validate();
+
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < rules; i += 1000) {
+            nodes.add("rule_" + i);
+        }
+        List<String> reported = new ArrayList<>();
+        messages.forEach(message -> reported.add(message.getNode()));
+        assertEquals(nodes, reported);
+        assertEquals("Regular Expression is not valid with replace value: Broken_0(", messages.get(0).getMessage());
+    }
+
+    @Test
+    public void testAdd_WhenRulesRepeatKnownExpressions_ShouldKeepTheBacklogBounded() {
+        ExpandedRegexValidator validator = new ExpandedRegexValidator();
+        validator.add("rule_first", TEMPLATE, Collections.singletonList("Broken("), 1, 1);
+        int rules = ExpandedRegexValidator.MAX_PENDING_EXPANSIONS * 4;
+        for (int i = 0; i < rules; i++) {
+            validator.add("rule_" + i, TEMPLATE, Collections.singletonList("Broken("), i + 2, 1);
+            assertTrue("Expansions waiting for a chunk not full must be bounded",
+                    validator.pending() <= ExpandedRegexValidator.MAX_PENDING_EXPANSIONS);
+        }
+
+        assertEquals(rules + 1, validator.validate().size());
+    }
+
+    @Test
+    public void testValidate_WhenCheckerIsGiven_ShouldDecideEveryExpansionWithIt() {
+        Set<String> checked = ConcurrentHashMap.newKeySet();
+        RegexChecker checker = regEx -> {
+            checked.add(regEx);
+            return RegexChecker.COMPILE.isValid(regEx);
+        };
+        ExpandedRegexValidator validator = new ExpandedRegexValidator(ForkJoinPool.commonPool(), ValidationMetrics.NONE, checker);
+        validator.add("rule", TEMPLATE, Collections.singletonList("Jigsaw"), null, null);
+
+        assertTrue(validator.validate().isEmpty());
+        assertTrue("Expanded expression must go through the checker", checked.contains("<fullName>Jigsaw</fullName>"));
+    }
+}
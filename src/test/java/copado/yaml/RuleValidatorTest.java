@@ -0,0 +1,40 @@
+package copado.yaml;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class RuleValidatorTest {
+
+    @Test
+    public void testValidate_WhenRuleMapIsSplitAcrossCores_ShouldKeepRuleOrder() {
+        int ruleCount = RuleValidator.PARALLEL_THRESHOLD * 3;
+        Map<String, CopadoYamlRule> rules = new LinkedHashMap<>();
+        for (int i = 0; i < ruleCount; i++) {
+            CopadoYamlRule rule = new CopadoYamlRule();
+            rule.setRegex_name(i % 2 == 0 ? "field" : "unknown");
+            rule.setExtensions(Collections.singletonList("object"));
+            rules.put("rule_" + i, rule);
+        }
+        CopadoYaml yaml = new CopadoYaml();
+        yaml.setRegex_lib(Collections.singletonMap("field", "<fields>"));
+        yaml.setRules(rules);
+
+        YamlValidations validations = new YamlValidations();
+        new RuleValidator().validate(yaml, validations);
+
+        List<YamlValidationMessage> messages = validations.getYamlValidationMessages();
+        assertEquals("Every rule with an unknown regex must be reported", ruleCount / 2, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals("Messages must follow rule order", "rule_" + (2 * i + 1), messages.get(i).getNode());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package copado.yaml;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class YamlProcessorConcurrencyTest {
+
+    private static final int RULES = 200;
+    private static final int REPLACE_VALUES = 5;
+    private static final int VALIDATIONS = 64;
+
+    private final YamlProcessor yamlProcessor = new YamlProcessor();
+    private String yaml;
+    private byte[] yamlBytes;
+    private YamlValidations expected;
+
+    @Before
+    public void setUp() {
+        StringBuilder content = new StringBuilder("regex_lib:\n");
+        for (int i = 0; i < 10; i++) {
+            content.append("    regex_").append(i).append(": '(?s)(<fields>(?:(?!<fields>).)*?<fullName>___REPLACEVALUE___</fullName>")
+                    .append("(?:(?!<fields>).)*?</fields>)'\n");
+        }
+        content.append("rules:\n");
+        for (int i = 0; i < RULES; i++) {
+            content.append("    rule_").append(i).append(":\n")
+                    .append("        extensions:\n            - object\n")
+                    .append("        regex_name: 'regex_").append(i % 10).append("'\n")
+                    .append("        replace_values:\n");
+            for (int v = 0; v < REPLACE_VALUES; v++) {
+                // every 50th rule has a value breaking its expression
+                content.append("            - Field_").append(i).append('_').append(v).append(i % 50 == 0 && v == 0 ? "(" : "")
+                        .append("__c\n");
+            }
+        }
+        yaml = content.toString();
+        yamlBytes = yaml.getBytes(StandardCharsets.UTF_8);
+        expected = yamlProcessor.isValid(yaml);
+    }
+
+    @Test
+    public void testIsValid_WhenManyThreadsShareTheProcessor_ShouldRetrieveSameMessagesOnEveryThread() throws Exception {
+        assertEquals("One message per broken replace value", RULES / 50, expected.getYamlValidationMessages().size());
+
+        run(8);
+    }
+
+    private void run(final int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<YamlValidations>> futures = new ArrayList<>();
+            for (int i = 0; i < VALIDATIONS; i++) {
+                int input = i;
+                futures.add(executor.submit(() -> validate(input)));
+            }
+            for (Future<YamlValidations> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private YamlValidations validate(final int input) {
+        switch (input % 3) {
+            case 0:
+                return yamlProcessor.isValid(yamlBytes);
+            case 1:
+                return yamlProcessor.isValid(new StringReader(yaml));
+            default:
+                return yamlProcessor.isValid(new ByteArrayInputStream(yamlBytes));
+        }
+    }
+}
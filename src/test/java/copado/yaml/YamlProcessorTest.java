@@ -1,12 +1,26 @@
 package copado.yaml;
 
 
+import copado.metrics.ValidationMetrics;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
@@ -27,6 +41,11 @@ public class YamlProcessorTest {
     private final static String INVALID_EXTENSIONS = "yaml/invalid/InvalidExtensions.yml";
     private final static String BRANCHES_AND_EXClUSION = "yaml/invalid/BranchesAndExclusion.yml";
     private final static String RULE_WITH_NO_REGEX = "yaml/invalid/RuleWithNoRegexAssociated.yml";
+    private final static String MULTIPLE_ERRORS = "yaml/invalid/MultipleErrors.yml";
+    private final static String RULES_BEFORE_REGEX_LIB = "yaml/invalid/RulesBeforeRegexLib.yml";
+    private final static String INVALID_REPLACE_VALUES = "yaml/invalid/InvalidReplaceValues.yml";
+
+    private final static String DUPLICATE_RULES = "yaml/duplicates/DuplicateRules.yml";
 
     private final static String VALID_YAML = "yaml/valid/ValidYaml.yml";
     private final static String VALID_YAML_WITH_BRANCHES = "yaml/valid/ValidYamlWithBranches.yml";
@@ -120,6 +139,65 @@ public class YamlProcessorTest {
         assertEquals("Validation message must be 'Is not possible to use branches and exclusion_branches nodes at same time'", validations.getYamlValidationMessages().get(0).getMessage(), "Is not possible to use branches and exclusion_branches nodes at same time");
     }
 
+    @Test
+    public void testIsValidYaml_WhenSeveralRulesAreWrong_ShouldRetrieveEveryErrorWithRuleNameAsNode() {
+        YamlValidations validations = yamlProcessor.isValid(new File(classLoader.getResource(MULTIPLE_ERRORS).getPath()));
+        List<YamlValidationMessage> messages = validations.getYamlValidationMessages();
+        assertEquals("Every error must be reported", 6, messages.size());
+        assertMessage("broken_regex", "Regular Expression is not valid", messages.get(0));
+        assertMessage("missing_regex_and_targets", "Regex node must be defined", messages.get(1));
+        assertMessage("missing_regex_and_targets", "At least file_names or extensions node must be defined", messages.get(2));
+        assertMessage("unknown_regex_and_both_branches", "Regular expression name in this rule was not found", messages.get(3));
+        assertMessage("unknown_regex_and_both_branches", "Extensions must be a string without symbols: obj$ect", messages.get(4));
+        assertMessage("unknown_regex_and_both_branches", "Is not possible to use branches and exclusion_branches nodes at same time", messages.get(5));
+    }
+
+    @Test
+    public void testIsValidYaml_WhenExistInvalidYamlFile_ShouldRetrieveLineAndColumn() {
+        YamlValidations validations = yamlProcessor.isValid(new File(classLoader.getResource(INVALID_YAML).getPath()));
+        assertEquals("Validation line must be where the syntax error is", Integer.valueOf(2), validations.getYamlValidationMessages().get(0).getLine());
+        assertEquals("Validation column must be where the syntax error is", Integer.valueOf(121), validations.getYamlValidationMessages().get(0).getColumn());
+    }
+
+    @Test
+    public void testIsValidYaml_WhenRuleIsWrong_ShouldRetrieveLineAndColumnOfTheRule() {
+        YamlValidations validations = yamlProcessor.isValid(new File(classLoader.getResource(MULTIPLE_ERRORS).getPath()));
+        YamlValidationMessage message = validations.getYamlValidationMessages().get(1);
+        assertEquals("Validation line must be the rule line", Integer.valueOf(10), message.getLine());
+        assertEquals("Validation column must be the rule column", Integer.valueOf(5), message.getColumn());
+    }
+
+    @Test
+    public void testIsValidYaml_WhenRulesAreBeforeRegexLib_ShouldResolveRegexNames() {
+        YamlValidations validations = yamlProcessor.isValid(new File(classLoader.getResource(RULES_BEFORE_REGEX_LIB).getPath()));
+        List<YamlValidationMessage> messages = validations.getYamlValidationMessages();
+        assertEquals("Only the unknown regex name must be reported", 1, messages.size());
+        assertMessage("unknown_regex", "Regular expression name in this rule was not found", messages.get(0));
+    }
+
+    @Test
+    public void testIsValidYaml_WhenReplaceValueBreaksTheRegex_ShouldRetrieveRuleAndValue() {
+        YamlValidations validations = yamlProcessor.isValid(new File(classLoader.getResource(INVALID_REPLACE_VALUES).getPath()));
+        List<YamlValidationMessage> messages = validations.getYamlValidationMessages();
+        assertEquals("Expansions of an invalid template must not be reported", 4, messages.size());
+        assertMessage("broken_regex", "Regular Expression is not valid", messages.get(0));
+        assertMessage("account_fields", "Regular Expression is not valid with replace value: Jig(saw", messages.get(1));
+        assertMessage("contact_fields", "Regular Expression is not valid with replace value: Jig(saw", messages.get(2));
+        assertMessage("contact_fields", "Regular Expression is not valid with replace value: Field[", messages.get(3));
+        assertEquals("Validation line must be the rule line", Integer.valueOf(14), messages.get(2).getLine());
+    }
+
+    @Test
+    public void testValidate_WhenReplaceValueBreaksTheRegex_ShouldRetrieveSameMessagesAsIsValid() {
+        File yamlFile = new File(classLoader.getResource(INVALID_REPLACE_VALUES).getPath());
+        List<YamlValidationMessage> expected = yamlProcessor.isValid(yamlFile).getYamlValidationMessages();
+        List<YamlValidationMessage> messages = yamlProcessor.validate(yamlProcessor.parseYamlFile(yamlFile)).getYamlValidationMessages();
+        assertEquals(expected.size(), messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertMessage(expected.get(i).getNode(), expected.get(i).getMessage(), messages.get(i));
+        }
+    }
+
     @Test
     public void testIsValidYaml_WhenValidYaml_ShouldRetrieveTrue() {
         YamlValidations validations = yamlProcessor.isValid(new File(classLoader.getResource(VALID_YAML).getPath()));
@@ -150,4 +228,109 @@ public class YamlProcessorTest {
         assertTrue("Yaml must be syntactically valid", !validations.hasErrors());
     }
 
+    @Test
+    public void testIsValidYaml_WhenDuplicatesAreChecked_ShouldRetrieveDuplicateRedundantAndUnusedEntries() {
+        File yamlFile = new File(classLoader.getResource(DUPLICATE_RULES).getPath());
+        assertFalse("Duplicates are only reported when asked", yamlProcessor.isValid(yamlFile).hasErrors());
+
+        YamlProcessor duplicateChecker = new YamlProcessor(RegexChecker.COMPILE, RegexAnalyzer.NONE, ValidationMetrics.NONE, true);
+        List<YamlValidationMessage> messages = duplicateChecker.isValid(yamlFile).getYamlValidationMessages();
+
+        assertEquals(6, messages.size());
+        assertMessage("field-copy", "Regular expression is the same as regex_lib entry: field", messages.get(0));
+        assertEquals("Messages carry the location of the node", Integer.valueOf(3), messages.get(0).getLine());
+        assertMessage("user-permission", "Regular expression is not used by any rule", messages.get(1));
+        assertMessage("same_as_all_objects", "Rule is a duplicate of rule: all_objects", messages.get(2));
+        assertMessage("account_only", "Rule is redundant, rule all_objects applies the same expressions to the same files and branches", messages.get(3));
+        assertMessage("account_more_values", "Replace values already applied by rule all_objects: Jigsaw", messages.get(4));
+        assertMessage("on_uat", "Rule is redundant, rule all_objects applies the same expressions to the same files and branches", messages.get(5));
+        assertEquals("Object model gives the same messages", messages.size(),
+                duplicateChecker.validate(duplicateChecker.parseYamlFile(yamlFile)).getYamlValidationMessages().size());
+    }
+
+    @Test
+    public void testIsValid_WhenContentIsInMemory_ShouldRetrieveSameMessagesAsFile() throws IOException {
+        for (String resource : Arrays.asList(VALID_YAML, MULTIPLE_ERRORS, INVALID_YAML)) {
+            File yamlFile = new File(classLoader.getResource(resource).getPath());
+            byte[] bytes = Files.readAllBytes(yamlFile.toPath());
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            YamlValidations expected = yamlProcessor.isValid(yamlFile);
+
+            assertEquals(resource + " as String", expected, yamlProcessor.isValid(text));
+            assertEquals(resource + " as byte[]", expected, yamlProcessor.isValid(bytes));
+            assertEquals(resource + " as Reader", expected, yamlProcessor.isValid(new StringReader(text)));
+            assertEquals(resource + " as InputStream", expected, yamlProcessor.isValid(new ByteArrayInputStream(bytes)));
+        }
+    }
+
+    @Test
+    public void testIsValid_WhenContentCanNotBeRead_ShouldRetrieveMessageWithoutWritingToStderr() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        PrintStream originalStderr = System.err;
+        System.setErr(new PrintStream(stderr));
+        try {
+            assertTrue(yamlProcessor.isValid(failing).hasErrors());
+            assertTrue(yamlProcessor.isValid(new File(classLoader.getResource(INVALID_PATH_DIRECTORY).getPath())).hasErrors());
+        } finally {
+            System.setErr(originalStderr);
+        }
+        assertEquals("Nothing must be written to stderr", "", stderr.toString());
+    }
+
+    @Test
+    public void testAnalyze_WhenRulesSelectTheSameFiles_ShouldOnlyReportTheLaterOne() {
+        CopadoYaml yaml = new CopadoYaml();
+        yaml.setRegex_lib(Collections.singletonMap("field", "<fullName>___REPLACEVALUE___</fullName>"));
+        Map<String, CopadoYamlRule> rules = new LinkedHashMap<>();
+        rules.put("first", rule(Arrays.asList("Jigsaw")));
+        rules.put("second", rule(Arrays.asList("Jigsaw", "Rating")));
+        yaml.setRules(rules);
+
+        List<YamlValidationMessage> messages = DuplicateAnalyzer.analyze(yaml);
+
+        assertEquals(1, messages.size());
+        assertMessage("second", "Replace values already applied by rule first: Jigsaw", messages.get(0));
+    }
+
+    @Test(timeout = 10000)
+    public void testAnalyze_WhenManyRulesShareTheExpressionOnOtherFiles_ShouldOnlyLookUpRulesOfTheSameFiles() {
+        CopadoYaml yaml = new CopadoYaml();
+        yaml.setRegex_lib(Collections.singletonMap("field", "<fullName>___REPLACEVALUE___</fullName>"));
+        Map<String, CopadoYamlRule> rules = new LinkedHashMap<>();
+        CopadoYamlRule allObjects = rule(Arrays.asList("Jigsaw", "Rating"));
+        allObjects.setFile_names(null);
+        allObjects.setExtensions(Collections.singletonList("object"));
+        rules.put("all_objects", allObjects);
+        for (int i = 0; i < 40000; i++) {
+            CopadoYamlRule rule = rule(Arrays.asList("Jigsaw", "Rating"));
+            rule.setFile_names(Collections.singletonList("Object" + i + ".layout"));
+            rules.put("layout" + i, rule);
+        }
+        rules.put("account", rule(Arrays.asList("Rating")));
+        yaml.setRules(rules);
+
+        List<YamlValidationMessage> messages = DuplicateAnalyzer.analyze(yaml);
+
+        assertEquals(1, messages.size());
+        assertMessage("account", "Rule is redundant, rule all_objects applies the same expressions to the same files and branches", messages.get(0));
+    }
+
+    private static CopadoYamlRule rule(final List<String> replaceValues) {
+        CopadoYamlRule rule = new CopadoYamlRule();
+        rule.setFile_names(Collections.singletonList("Account.object"));
+        rule.setRegex_name("field");
+        rule.setReplace_values(replaceValues);
+        return rule;
+    }
+
+    private static void assertMessage(final String node, final String message, final YamlValidationMessage actual) {
+        assertEquals("Validation node must be '" + node + "'", node, actual.getNode());
+        assertEquals("Validation message must be '" + message + "'", message, actual.getMessage());
+    }
 }